@@ -0,0 +1,34 @@
+package com.cavetale.territory;
+
+import java.util.concurrent.TimeUnit;
+import org.bukkit.block.Biome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Map every Biome to its BiomeGroup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BiomeGroupBenchmark {
+    private final Biome[] biomes = Biome.values();
+
+    @Benchmark
+    public void of(Blackhole blackhole) {
+        for (Biome biome : biomes) {
+            blackhole.consume(BiomeGroup.Biomes.of(biome));
+        }
+    }
+}
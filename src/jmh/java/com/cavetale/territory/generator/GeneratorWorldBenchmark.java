@@ -0,0 +1,119 @@
+package com.cavetale.territory.generator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time each stage of the GeneratorWorld on a synthetic grid.  Every
+ * invocation starts from a fresh world which has run all previous
+ * stages, using the same parameters as the Generator.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratorWorldBenchmark {
+    static final int SPLIT_SIZE = 1000;
+    static final int ESSENTIAL_SIZE = 100;
+    static final int MERGE_SIZE = 500;
+
+    @State(Scope.Thread)
+    public static class Stage {
+        @Param({"1024", "4096"})
+        public int size;
+        public GeneratorWorld world;
+
+        /**
+         * Run all stages before this one.
+         */
+        protected void prepare(int until) {
+            Logger logger = Logger.getLogger("GeneratorWorldBenchmark");
+            logger.setLevel(java.util.logging.Level.WARNING);
+            world = new GeneratorWorld("benchmark", new File("target/benchmark"), logger);
+            world.loadBiomes(SyntheticBiomes.create(size, 1L));
+            if (until > 0) world.findZones();
+            if (until > 1) world.mergeRivers();
+            if (until > 2) world.splitLargeZones(SPLIT_SIZE);
+            if (until > 3) {
+                world.findEssentialBiomes(ESSENTIAL_SIZE);
+                world.mergeZones(MERGE_SIZE);
+            }
+        }
+    }
+
+    public static class FindZones extends Stage {
+        @Setup(Level.Invocation)
+        public void setup() {
+            prepare(0);
+        }
+    }
+
+    public static class MergeRivers extends Stage {
+        @Setup(Level.Invocation)
+        public void setup() {
+            prepare(1);
+        }
+    }
+
+    public static class SplitLargeZones extends Stage {
+        @Setup(Level.Invocation)
+        public void setup() {
+            prepare(2);
+        }
+    }
+
+    public static class MergeZones extends Stage {
+        @Setup(Level.Invocation)
+        public void setup() {
+            prepare(3);
+            world.findEssentialBiomes(ESSENTIAL_SIZE);
+        }
+    }
+
+    public static class ScaleZoneLevels extends Stage {
+        @Setup(Level.Invocation)
+        public void setup() {
+            prepare(4);
+        }
+    }
+
+    @Benchmark
+    public int findZones(FindZones state) {
+        return state.world.findZones();
+    }
+
+    @Benchmark
+    public int mergeRivers(MergeRivers state) {
+        return state.world.mergeRivers();
+    }
+
+    @Benchmark
+    public int splitLargeZones(SplitLargeZones state) {
+        return state.world.splitLargeZones(SPLIT_SIZE);
+    }
+
+    @Benchmark
+    public int mergeZones(MergeZones state) {
+        return state.world.mergeZones(MERGE_SIZE);
+    }
+
+    @Benchmark
+    public int scaleZoneLevels(ScaleZoneLevels state) {
+        state.world.scaleZoneLevels();
+        return state.world.getMaxLevel();
+    }
+}
@@ -0,0 +1,63 @@
+package com.cavetale.territory.generator;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Border chunks of every zone of a fully merged synthetic world,
+ * collected per zone and drawn by the MapRenderer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratorZoneBenchmark {
+    @Param({"1024", "4096"})
+    public int size;
+    private GeneratorWorld world;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Logger logger = Logger.getLogger("GeneratorZoneBenchmark");
+        logger.setLevel(java.util.logging.Level.WARNING);
+        world = new GeneratorWorld("benchmark", new File("target/benchmark"), logger);
+        world.loadBiomes(SyntheticBiomes.create(size, 1L));
+        world.findZones();
+        world.mergeRivers();
+        world.splitLargeZones(GeneratorWorldBenchmark.SPLIT_SIZE);
+        world.findEssentialBiomes(GeneratorWorldBenchmark.ESSENTIAL_SIZE);
+        world.mergeZones(GeneratorWorldBenchmark.MERGE_SIZE);
+    }
+
+    @Benchmark
+    public int getBorderChunks() {
+        int result = 0;
+        for (GeneratorZone zone : world.getZones()) {
+            result += zone.getBorderChunks().size();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int drawZones() {
+        world.makeImage(0);
+        world.drawZones(true, false);
+        world.drawZones(false, false);
+        return world.getPixels()[0];
+    }
+}
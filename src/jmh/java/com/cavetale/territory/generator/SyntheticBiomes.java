@@ -0,0 +1,80 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Biome grids for benchmarks, without a server or structure cache.
+ *
+ * Biomes are Voronoi cells around one jittered site per square of
+ * CELL chunks, each with a random handled biome.  Some cell borders
+ * turn into rivers, so every generator stage has work to do.  The
+ * same seed always yields the same grid.
+ */
+public final class SyntheticBiomes {
+    public static final int CELL = 24;
+    private static final List<BiomeGroup> LAND = new ArrayList<>();
+
+    static {
+        for (BiomeGroup biomeGroup : BiomeGroup.values()) {
+            if (biomeGroup.category.handled) LAND.add(biomeGroup);
+        }
+    }
+
+    private SyntheticBiomes() { }
+
+    /**
+     * Create a square grid centered on chunk 0, 0.
+     */
+    public static ChunkGrid create(int size, long seed) {
+        final int cells = size / CELL + 2;
+        final int[] siteX = new int[cells * cells];
+        final int[] siteZ = new int[cells * cells];
+        final BiomeGroup[] siteBiomes = new BiomeGroup[cells * cells];
+        Random random = new Random(seed);
+        for (int i = 0; i < siteX.length; i += 1) {
+            siteX[i] = (i % cells) * CELL + random.nextInt(CELL);
+            siteZ[i] = (i / cells) * CELL + random.nextInt(CELL);
+            siteBiomes[i] = LAND.get(random.nextInt(LAND.size()));
+        }
+        ChunkGrid grid = new ChunkGrid(-size / 2, -size / 2, size, size);
+        for (int z = 0; z < size; z += 1) {
+            for (int x = 0; x < size; x += 1) {
+                final int cellX = x / CELL;
+                final int cellZ = z / CELL;
+                int nearest = -1;
+                int second = -1;
+                long nearestDist = Long.MAX_VALUE;
+                long secondDist = Long.MAX_VALUE;
+                for (int dz = -1; dz <= 1; dz += 1) {
+                    for (int dx = -1; dx <= 1; dx += 1) {
+                        final int cx = cellX + dx;
+                        final int cz = cellZ + dz;
+                        if (cx < 0 || cz < 0 || cx >= cells || cz >= cells) continue;
+                        final int site = cx + cz * cells;
+                        final long ddx = siteX[site] - x;
+                        final long ddz = siteZ[site] - z;
+                        final long dist = ddx * ddx + ddz * ddz;
+                        if (dist < nearestDist) {
+                            second = nearest;
+                            secondDist = nearestDist;
+                            nearest = site;
+                            nearestDist = dist;
+                        } else if (dist < secondDist) {
+                            second = site;
+                            secondDist = dist;
+                        }
+                    }
+                }
+                final boolean river = second >= 0
+                    && ((nearest ^ second) & 3) == 0
+                    && Math.sqrt(secondDist) - Math.sqrt(nearestDist) < 1.5;
+                grid.setBiomeGroup(grid.getAx() + x, grid.getAz() + z,
+                                   river ? BiomeGroup.RIVER : siteBiomes[nearest]);
+            }
+        }
+        return grid;
+    }
+}
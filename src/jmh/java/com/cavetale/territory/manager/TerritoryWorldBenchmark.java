@@ -0,0 +1,103 @@
+package com.cavetale.territory.manager;
+
+import com.cavetale.core.struct.Vec2i;
+import com.cavetale.territory.BiomeGroup;
+import com.cavetale.territory.struct.Territory;
+import com.cavetale.territory.util.IntList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Territory lookups in a world of square territories, covering
+ * WORLD_SIZE chunks in each direction.  Random lookups miss the
+ * region cache most of the time, a walk mostly hits it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(TerritoryWorldBenchmark.LOOKUPS)
+public class TerritoryWorldBenchmark {
+    static final int WORLD_SIZE = 4096;
+    static final int TERRITORY_SIZE = 24;
+    static final int LOOKUPS = 4096;
+    private TerritoryWorld territoryWorld;
+    private final int[] randomChunks = new int[LOOKUPS * 2];
+    private final int[] walkChunks = new int[LOOKUPS * 2];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Territory> territories = new ArrayList<>();
+        final int min = -WORLD_SIZE / 2;
+        int id = 0;
+        for (int tz = min; tz < -min; tz += TERRITORY_SIZE) {
+            for (int tx = min; tx < -min; tx += TERRITORY_SIZE) {
+                IntList spans = new IntList();
+                for (int z = tz; z < tz + TERRITORY_SIZE; z += 1) {
+                    spans.add(z);
+                    spans.add(tx);
+                    spans.add(tx + TERRITORY_SIZE - 1);
+                }
+                id += 1;
+                territories.add(new Territory(id, id % 50, new Vec2i(tx, tz), "Territory", BiomeGroup.FOREST,
+                                              spans.toArray()));
+            }
+        }
+        territoryWorld = new TerritoryWorld("benchmark");
+        territoryWorld.load(territories);
+        Random random = new Random(1L);
+        int x = 0;
+        int z = 0;
+        for (int i = 0; i < LOOKUPS; i += 1) {
+            randomChunks[i * 2] = min + random.nextInt(WORLD_SIZE);
+            randomChunks[i * 2 + 1] = min + random.nextInt(WORLD_SIZE);
+            x += random.nextInt(3) - 1;
+            z += random.nextInt(3) - 1;
+            walkChunks[i * 2] = x;
+            walkChunks[i * 2 + 1] = z;
+        }
+    }
+
+    @Benchmark
+    public int getTerritoryAtChunkRandom() {
+        int result = 0;
+        for (int i = 0; i < LOOKUPS; i += 1) {
+            result += territoryWorld.getTerritoryAtChunk(randomChunks[i * 2], randomChunks[i * 2 + 1]).getId();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int getTerritoryAtChunkWalk() {
+        int result = 0;
+        for (int i = 0; i < LOOKUPS; i += 1) {
+            result += territoryWorld.getTerritoryAtChunk(walkChunks[i * 2], walkChunks[i * 2 + 1]).getId();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int levelAtWalk() {
+        int result = 0;
+        for (int i = 0; i < LOOKUPS; i += 1) {
+            result += territoryWorld.levelAt(walkChunks[i * 2] << 4, walkChunks[i * 2 + 1] << 4);
+        }
+        return result;
+    }
+}
@@ -69,7 +69,6 @@ public enum BiomeGroup {
         public final boolean essential;
     }
 
-    public static final EnumMap<Biome, BiomeGroup> BIOMES = new EnumMap<>(Biome.class);
     public static final Map<String, BiomeGroup> NAMES = new HashMap<>();
     public static final Map<String, BiomeGroup> KEYS = new HashMap<>();
     public final Category category;
@@ -95,9 +94,20 @@ public enum BiomeGroup {
         }
     }
 
-    public static BiomeGroup of(Biome biome) {
-        if (biome == null) return VOID;
-        return BIOMES.computeIfAbsent(biome, BiomeGroup::forBiome);
+    /**
+     * Lookup by Bukkit biome.  Kept out of BiomeGroup, whose methods
+     * must not mention Biome, so the command line generator can use
+     * BiomeGroup without Paper on the class path.
+     */
+    public static final class Biomes {
+        private static final EnumMap<Biome, BiomeGroup> BIOMES = new EnumMap<>(Biome.class);
+
+        private Biomes() { }
+
+        public static BiomeGroup of(Biome biome) {
+            if (biome == null) return VOID;
+            return BIOMES.computeIfAbsent(biome, b -> BiomeGroup.of(b.name()));
+        }
     }
 
     public static BiomeGroup of(String name) {
@@ -108,10 +118,6 @@ public enum BiomeGroup {
         return KEYS.get(name);
     }
 
-    private static BiomeGroup forBiome(Biome biome) {
-        return of(biome.name());
-    }
-
     private static BiomeGroup forName(String biome) {
         BiomeGroup result = forName2(biome);
         if (result != null) result.names.add(biome);
@@ -1,7 +1,11 @@
 package com.cavetale.territory;
 
+import com.cavetale.territory.generator.AnvilBiomeSource;
 import com.cavetale.territory.generator.GeneratorWorld;
+import com.cavetale.territory.generator.StructuresDbBiomeSource;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.logging.Logger;
 
 public final class Main {
@@ -19,6 +23,8 @@ public final class Main {
 
     private static void usage() {
         System.err.println("Usage: java -jar Territory.jar biomes|territories <worldpath> <imagepath>");
+        System.err.println("Territories are saved into <worldpath>/territory, and the map as tiles"
+                           + " if <imagepath> is not a .png file.");
         System.exit(1);
     }
 
@@ -43,6 +49,12 @@ public final class Main {
             return;
         }
         generatorWorld = new GeneratorWorld(folder.getName(), folder, logger);
+        File structuresFile = new File(folder, StructuresDbBiomeSource.FILE_NAME);
+        if (structuresFile.isFile()) {
+            generatorWorld.setBiomeSource(new StructuresDbBiomeSource(structuresFile));
+        } else {
+            generatorWorld.setBiomeSource(new AnvilBiomeSource(new File(folder, AnvilBiomeSource.REGION_FOLDER), logger));
+        }
         time("loadBiomes", generatorWorld::loadBiomes);
         time("findZones", () -> generatorWorld.findZones());
         if (makeTerritories) {
@@ -50,14 +62,25 @@ public final class Main {
             time("splitLargeZones", () -> generatorWorld.splitLargeZones(1000));
             time("findEssentialBiomes", () -> generatorWorld.findEssentialBiomes(100));
             time("mergeZones", () -> generatorWorld.mergeZones(500));
+            time("scaleZoneLevels", generatorWorld::scaleZoneLevels);
+            time("saveZones", generatorWorld::saveZones);
+            time("planSites", generatorWorld::planSites);
         }
-        generatorWorld.makeImage(0);
-        if (!makeTerritories) {
-            generatorWorld.drawBiomes();
+        if (makeTerritories && !imageFile.getName().endsWith(".png")) {
+            time("saveMapTiles", () -> {
+                    try {
+                        generatorWorld.saveMapTiles(imageFile);
+                    } catch (IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                });
+        } else if (makeTerritories) {
+            generatorWorld.saveMap(imageFile);
         } else {
-            generatorWorld.drawZones(true, false);
+            generatorWorld.makeImage(0);
+            generatorWorld.drawBiomes();
+            generatorWorld.saveImage(imageFile);
         }
-        generatorWorld.saveImage(imageFile);
         generatorWorld.debug(System.out);
     }
 
@@ -42,6 +42,13 @@ public final class TerritoryPlugin extends JavaPlugin {
         territoryCommand.enable();
     }
 
+    @Override
+    public void onDisable() {
+        if (generator != null) {
+            generator.disable();
+        }
+    }
+
     public static TerritoryPlugin territoryPlugin() {
         return instance;
     }
@@ -3,6 +3,7 @@ package com.cavetale.territory;
 import com.cavetale.area.struct.Area;
 import com.cavetale.territory.generator.structure.GeneratorStructure;
 import com.cavetale.territory.generator.structure.GeneratorSurfaceStructure;
+import com.cavetale.territory.generator.structure.StructureTemplate;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.NamespacedKey;
@@ -17,8 +18,9 @@ import static com.cavetale.territory.TerritoryStructureCategory.*;
 @RequiredArgsConstructor
 public enum TerritoryStructureType {
     MOB_CAMP(SURFACE, "MobCamp", "territory:mob_camp") {
-        @Override public GeneratorStructure createGeneratorStructure(World world, String name, List<Area> areas) {
-            return new GeneratorSurfaceStructure(this, world, name, areas);
+        @Override public GeneratorStructure createGeneratorStructure(World world, String name, List<Area> areas,
+                                                                     StructureTemplate.Palette palette) {
+            return new GeneratorSurfaceStructure(this, world, name, areas, palette);
         }
     },
     ;
@@ -33,7 +35,8 @@ public enum TerritoryStructureType {
         this.key = NamespacedKey.fromString(key);
     }
 
-    public abstract GeneratorStructure createGeneratorStructure(World world, String name, List<Area> areas);
+    public abstract GeneratorStructure createGeneratorStructure(World world, String name, List<Area> areas,
+                                                                StructureTemplate.Palette palette);
 
     public static TerritoryStructureType of(NamespacedKey key) {
         for (TerritoryStructureType it : values()) {
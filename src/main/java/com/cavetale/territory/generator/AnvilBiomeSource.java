@@ -0,0 +1,322 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read biomes straight from the region files of a world folder, for
+ * worlds without a structures.db.
+ *
+ * The grid bounds are derived from the region file names alone.
+ * Each region file is then memory mapped and decoded by its own
+ * task, so only as many files are open as there are threads.  Chunks
+ * may end up in the grid in any order, but each one is written by
+ * exactly one task.
+ *
+ * Only the 1.18+ chunk format is understood, with biome palettes in
+ * each section.  Each chunk gets the BiomeGroup which occupies most
+ * of its 4x4x4 biome cells at or above MIN_SECTION_Y, so cave biomes
+ * deep down don't win over the surface.
+ */
+public final class AnvilBiomeSource implements BiomeSource {
+    public static final String REGION_FOLDER = "region";
+    /**
+     * The lowest section which counts, y = 64.
+     */
+    static final int MIN_SECTION_Y = 4;
+    private static final Pattern REGION_PATTERN = Pattern.compile("r\\.(-?[0-9]+)\\.(-?[0-9]+)\\.mca");
+    private static final int SECTOR_SIZE = 4096;
+    private static final int CELLS = 4 * 4 * 4;
+    private static final BiomeGroup[] BIOME_GROUPS = BiomeGroup.values();
+    private static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_LONG_ARRAY = 12;
+    private final File regionFolder;
+    private final Logger logger;
+    private final ForkJoinPool pool;
+    /**
+     * Biome key => BiomeGroup ordinal, or -1 if unknown.
+     * BiomeGroup.of is not thread safe.
+     */
+    private final ConcurrentHashMap<String, Integer> biomeGroupCache = new ConcurrentHashMap<>();
+    private final AtomicInteger chunkCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+
+    public AnvilBiomeSource(final File regionFolder, final Logger logger, final ForkJoinPool pool) {
+        this.regionFolder = regionFolder;
+        this.logger = logger;
+        this.pool = pool;
+    }
+
+    public AnvilBiomeSource(final File regionFolder, final Logger logger) {
+        this(regionFolder, logger, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public ChunkGrid createGrid() {
+        File[] files = regionFolder.listFiles();
+        if (files == null) {
+            throw new IllegalStateException("Region folder not found: " + regionFolder);
+        }
+        List<File> regionFiles = new ArrayList<>();
+        int ax = 0;
+        int bx = 0;
+        int az = 0;
+        int bz = 0;
+        for (File file : files) {
+            Matcher matcher = REGION_PATTERN.matcher(file.getName());
+            if (!matcher.matches() || file.length() < 2 * SECTOR_SIZE) continue;
+            final int regionX = Integer.parseInt(matcher.group(1));
+            final int regionZ = Integer.parseInt(matcher.group(2));
+            ax = Math.min(ax, regionX << 5);
+            az = Math.min(az, regionZ << 5);
+            bx = Math.max(bx, (regionX << 5) + 31);
+            bz = Math.max(bz, (regionZ << 5) + 31);
+            regionFiles.add(file);
+        }
+        ChunkGrid grid = new ChunkGrid(ax, az, bx - ax + 1, bz - az + 1);
+        chunkCount.set(0);
+        skippedCount.set(0);
+        List<Callable<Void>> tasks = new ArrayList<>(regionFiles.size());
+        for (File file : regionFiles) {
+            tasks.add(() -> {
+                    readRegion(file, grid);
+                    return null;
+                });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ie);
+            } catch (ExecutionException ee) {
+                throw new IllegalStateException(ee.getCause());
+            }
+        }
+        logger.info("[AnvilBiomeSource] " + regionFiles.size() + " regions"
+                    + " chunks:" + chunkCount.get()
+                    + " skipped:" + skippedCount.get());
+        return grid;
+    }
+
+    private void readRegion(File file, ChunkGrid grid) throws IOException {
+        Matcher matcher = REGION_PATTERN.matcher(file.getName());
+        matcher.matches();
+        final int regionX = Integer.parseInt(matcher.group(1));
+        final int regionZ = Integer.parseInt(matcher.group(2));
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int[] counts = new int[BIOME_GROUPS.length];
+        for (int i = 0; i < 32 * 32; i += 1) {
+            final int location = buffer.getInt(i * 4);
+            final int offset = (location >>> 8) * SECTOR_SIZE;
+            if (offset == 0) continue;
+            final int x = (regionX << 5) + (i & 31);
+            final int z = (regionZ << 5) + (i >> 5);
+            try {
+                if (offset + 5 > buffer.limit()) throw new IOException("Sector out of bounds: " + offset);
+                final int length = buffer.getInt(offset) - 1;
+                final int compression = buffer.get(offset + 4);
+                if (length < 0 || offset + 5 + length > buffer.limit()) {
+                    throw new IOException("Chunk length out of bounds: " + length);
+                }
+                ByteBuffer data = buffer.slice(offset + 5, length);
+                final InputStream raw;
+                switch (compression) {
+                case 1: raw = new GZIPInputStream(new ByteBufferInputStream(data)); break;
+                case 2: raw = new InflaterInputStream(new ByteBufferInputStream(data)); break;
+                case 3: raw = new ByteBufferInputStream(data); break;
+                default:
+                    // LZ4 or external .mcc file
+                    skippedCount.incrementAndGet();
+                    continue;
+                }
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(raw))) {
+                    Arrays.fill(counts, 0);
+                    readChunk(in, counts);
+                }
+            } catch (IOException ioe) {
+                logger.warning("[AnvilBiomeSource] " + file.getName() + " chunk " + x + "," + z + ": " + ioe.getMessage());
+                skippedCount.incrementAndGet();
+                continue;
+            }
+            int best = -1;
+            for (int j = 0; j < counts.length; j += 1) {
+                if (counts[j] > 0 && (best < 0 || counts[j] > counts[best])) best = j;
+            }
+            if (best >= 0) grid.setBiomeGroup(x, z, BIOME_GROUPS[best]);
+            chunkCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Walk the root compound and count the biome cells of each
+     * section.  Everything else is skipped.
+     */
+    private void readChunk(DataInputStream in, int[] counts) throws IOException {
+        if (in.readByte() != TAG_COMPOUND) throw new IOException("Root is not a compound");
+        in.skipBytes(in.readUnsignedShort());
+        while (true) {
+            final byte type = in.readByte();
+            if (type == TAG_END) return;
+            final String name = in.readUTF();
+            if (type == TAG_LIST && name.equals("sections")) {
+                final byte elementType = in.readByte();
+                final int size = in.readInt();
+                if (elementType != TAG_COMPOUND) {
+                    for (int i = 0; i < size; i += 1) skipPayload(in, elementType);
+                    continue;
+                }
+                for (int i = 0; i < size; i += 1) {
+                    readSection(in, counts);
+                }
+            } else {
+                skipPayload(in, type);
+            }
+        }
+    }
+
+    private void readSection(DataInputStream in, int[] counts) throws IOException {
+        int sectionY = Integer.MIN_VALUE;
+        String[] palette = null;
+        long[] data = null;
+        while (true) {
+            final byte type = in.readByte();
+            if (type == TAG_END) break;
+            final String name = in.readUTF();
+            if (type == TAG_BYTE && name.equals("Y")) {
+                sectionY = in.readByte();
+            } else if (type == TAG_COMPOUND && name.equals("biomes")) {
+                while (true) {
+                    final byte biomesType = in.readByte();
+                    if (biomesType == TAG_END) break;
+                    final String biomesName = in.readUTF();
+                    if (biomesType == TAG_LIST && biomesName.equals("palette")) {
+                        final byte elementType = in.readByte();
+                        final int size = in.readInt();
+                        palette = new String[size];
+                        for (int i = 0; i < size; i += 1) {
+                            if (elementType == TAG_STRING) {
+                                palette[i] = in.readUTF();
+                            } else {
+                                skipPayload(in, elementType);
+                            }
+                        }
+                    } else if (biomesType == TAG_LONG_ARRAY && biomesName.equals("data")) {
+                        data = new long[in.readInt()];
+                        for (int i = 0; i < data.length; i += 1) data[i] = in.readLong();
+                    } else {
+                        skipPayload(in, biomesType);
+                    }
+                }
+            } else {
+                skipPayload(in, type);
+            }
+        }
+        if (sectionY < MIN_SECTION_Y || palette == null || palette.length == 0) return;
+        if (palette.length == 1 || data == null) {
+            count(palette[0], CELLS, counts);
+            return;
+        }
+        // Palette indexes are packed into longs without spanning
+        // across two of them.
+        final int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(palette.length - 1));
+        final int perLong = 64 / bits;
+        final long mask = (1L << bits) - 1L;
+        for (int i = 0; i < CELLS; i += 1) {
+            if (i / perLong >= data.length) break;
+            final int index = (int) ((data[i / perLong] >>> ((i % perLong) * bits)) & mask);
+            if (index < palette.length) count(palette[index], 1, counts);
+        }
+    }
+
+    private void count(String biome, int amount, int[] counts) {
+        if (biome == null) return;
+        final int ordinal = biomeGroupCache.computeIfAbsent(biome, key -> {
+                synchronized (BiomeGroup.class) {
+                    BiomeGroup biomeGroup = BiomeSource.biomeGroupOf(key);
+                    return biomeGroup != null ? biomeGroup.ordinal() : -1;
+                }
+            });
+        if (ordinal >= 0) counts[ordinal] += amount;
+    }
+
+    private static void skipPayload(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+        case 1: in.skipNBytes(1); break;
+        case 2: in.skipNBytes(2); break;
+        case 3: case 5: in.skipNBytes(4); break;
+        case 4: case 6: in.skipNBytes(8); break;
+        case 7: in.skipNBytes(in.readInt()); break;
+        case 8: in.skipNBytes(in.readUnsignedShort()); break;
+        case 9: {
+            final byte elementType = in.readByte();
+            final int size = in.readInt();
+            for (int i = 0; i < size; i += 1) skipPayload(in, elementType);
+            break;
+        }
+        case 10:
+            while (true) {
+                final byte elementType = in.readByte();
+                if (elementType == TAG_END) break;
+                in.skipNBytes(in.readUnsignedShort());
+                skipPayload(in, elementType);
+            }
+            break;
+        case 11: in.skipNBytes(4L * in.readInt()); break;
+        case 12: in.skipNBytes(8L * in.readInt()); break;
+        default: throw new IOException("Unknown tag type: " + type);
+        }
+    }
+
+    /**
+     * Read a slice of the mapped region file without copying it.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            final int result = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+
+/**
+ * Where a GeneratorWorld gets its biomes from.
+ */
+public interface BiomeSource {
+    /**
+     * Create a grid covering all known chunks, plus chunk 0, 0, and
+     * fill in their biomes.
+     */
+    ChunkGrid createGrid();
+
+    /**
+     * Biomes may be stored as namespaced keys, minecraft:plains, or
+     * as enum names, PLAINS.
+     * @return the BiomeGroup or null if the biome is unknown
+     */
+    static BiomeGroup biomeGroupOf(String biome) {
+        final int colon = biome.indexOf(':');
+        final String name = colon >= 0 ? biome.substring(colon + 1) : biome;
+        return BiomeGroup.of(name.toUpperCase());
+    }
+}
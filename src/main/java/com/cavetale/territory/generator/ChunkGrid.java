@@ -0,0 +1,161 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.core.struct.Vec2i;
+import com.cavetale.territory.BiomeGroup;
+import com.cavetale.territory.util.Vectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Dense grid of all chunks within the rectangle of a GeneratorWorld.
+ * Each chunk is addressed by its row major index, relative to the
+ * top left corner (ax, az).
+ *
+ * Per chunk we store the BiomeGroup ordinal and the id of the
+ * GeneratorZone owning it.  Zone ids start at 1 and are never
+ * reused.  Zero means no zone.
+ */
+public final class ChunkGrid {
+    public static final byte NO_BIOME = -1;
+    public static final int NO_ZONE = 0;
+    private static final BiomeGroup[] BIOME_GROUPS = BiomeGroup.values();
+    @Getter private final int ax;
+    @Getter private final int az;
+    @Getter private final int width;
+    @Getter private final int height;
+    final byte[] biomes;
+    final int[] zones;
+    /**
+     * The position of each chunk within the chunk list of its zone.
+     */
+    final int[] slots;
+    /**
+     * Scratch marks for flood fills.  See newMark().
+     */
+    private final int[] marks;
+    private int markStamp;
+    private final List<GeneratorZone> zoneTable = new ArrayList<>();
+
+    public ChunkGrid(final int ax, final int az, final int width, final int height) {
+        this.ax = ax;
+        this.az = az;
+        this.width = width;
+        this.height = height;
+        final int size = width * height;
+        this.biomes = new byte[size];
+        this.zones = new int[size];
+        this.slots = new int[size];
+        this.marks = new int[size];
+        Arrays.fill(biomes, NO_BIOME);
+        zoneTable.add(null);
+    }
+
+    public int size() {
+        return biomes.length;
+    }
+
+    public boolean contains(int x, int z) {
+        return x >= ax && x < ax + width && z >= az && z < az + height;
+    }
+
+    public int index(int x, int z) {
+        return (x - ax) + (z - az) * width;
+    }
+
+    public int x(int index) {
+        return ax + index % width;
+    }
+
+    public int z(int index) {
+        return az + index / width;
+    }
+
+    public Vec2i vector(int index) {
+        return new Vec2i(x(index), z(index));
+    }
+
+    /**
+     * Get a neighbor index.  Directions are in the order of
+     * Vectors#neighbors.
+     * @return the index or -1 if out of bounds
+     */
+    public int neighbor(int index, int direction) {
+        return Vectors.neighbor(index, direction, width, height);
+    }
+
+    public boolean hasBiome(int index) {
+        return biomes[index] != NO_BIOME;
+    }
+
+    public BiomeGroup getBiomeGroup(int index) {
+        final byte ordinal = biomes[index];
+        return ordinal != NO_BIOME ? BIOME_GROUPS[ordinal] : null;
+    }
+
+    public void setBiomeGroup(int x, int z, BiomeGroup biomeGroup) {
+        biomes[index(x, z)] = biomeGroup != null ? (byte) biomeGroup.ordinal() : NO_BIOME;
+    }
+
+    public int getZoneId(int index) {
+        return zones[index];
+    }
+
+    public GeneratorZone getZoneAt(int index) {
+        return zoneTable.get(zones[index]);
+    }
+
+    public GeneratorZone getZone(int zoneId) {
+        return zoneTable.get(zoneId);
+    }
+
+    /**
+     * The upper bound (exclusive) of all zone ids handed out so far.
+     */
+    public int getZoneIdLimit() {
+        return zoneTable.size();
+    }
+
+    public GeneratorZone createZone(BiomeGroup biomeGroup) {
+        GeneratorZone zone = new GeneratorZone(this, zoneTable.size(), biomeGroup);
+        zoneTable.add(zone);
+        return zone;
+    }
+
+    /**
+     * Forget a zone.  Any remaining chunks will no longer belong to
+     * any zone.
+     */
+    public void removeZone(GeneratorZone zone) {
+        zone.clear();
+        zone.removed = true;
+        zoneTable.set(zone.gridId, null);
+    }
+
+    /**
+     * Remove all zones.
+     */
+    public void clearZones() {
+        Arrays.fill(zones, NO_ZONE);
+        zoneTable.clear();
+        zoneTable.add(null);
+    }
+
+    /**
+     * Start a new generation of scratch marks.  Each chunk counts
+     * as marked once mark() was called with the returned stamp.
+     */
+    public int newMark() {
+        markStamp += 1;
+        return markStamp;
+    }
+
+    public void mark(int index, int stamp) {
+        marks[index] = stamp;
+    }
+
+    public boolean isMarked(int index, int stamp) {
+        return marks[index] == stamp;
+    }
+}
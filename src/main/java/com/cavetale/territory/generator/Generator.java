@@ -2,33 +2,46 @@ package com.cavetale.territory.generator;
 
 import com.cavetale.core.struct.Cuboid;
 import com.cavetale.core.struct.Vec2i;
+import com.cavetale.core.struct.Vec3i;
 import com.cavetale.structure.cache.Structure;
 import com.cavetale.territory.BiomeGroup;
 import com.cavetale.territory.TerritoryPlugin;
 import com.cavetale.territory.TerritoryStructureCategory;
+import com.cavetale.territory.TerritoryStructureType;
+import com.cavetale.territory.generator.structure.BlockWriter;
 import com.cavetale.territory.generator.structure.GeneratorStructure;
 import com.cavetale.territory.generator.structure.GeneratorStructureCache;
+import com.cavetale.territory.generator.structure.GroundType;
+import com.cavetale.territory.generator.structure.StructureCatalog;
+import com.cavetale.territory.generator.structure.SurfaceProbe;
+import com.cavetale.territory.struct.StructureSites;
 import com.cavetale.territory.struct.Territory;
 import com.winthier.decorator.DecoratorEvent;
 import com.winthier.decorator.DecoratorPostWorldEvent;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
-import org.bukkit.HeightMap;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.Block;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.scheduler.BukkitTask;
 import static com.cavetale.structure.StructurePlugin.structureCache;
 
 /**
@@ -36,9 +49,29 @@ import static com.cavetale.structure.StructurePlugin.structureCache;
  */
 @RequiredArgsConstructor
 public final class Generator implements Listener {
-    static final long NANOS_PER_TICK = 1000_000_000L / 20L;
+    static final double MILLIS_PER_TICK = 1000.0 / 20.0;
+    static final int SPLIT_SIZE = 1000; // magic number!
+    static final int ESSENTIAL_SIZE = 100; // magic number!
+    static final int MERGE_SIZE = 500; // magic number!
+    static final int DEFAULT_EXCLUSION_RADIUS = 128;
+    static final double DEFAULT_PLACEMENT_BUDGET = 10.0;
     private final TerritoryPlugin plugin;
     private Map<String, GeneratorWorld> worlds = new HashMap<>();
+    /**
+     * Async mode runs the whole GeneratorWorld pipeline on one
+     * worker thread, instead of slicing it into ticks.
+     */
+    private boolean async;
+    private ExecutorService executor;
+    private final Map<String, CompletableFuture<Void>> pipelines = new HashMap<>();
+    private TickBudget tickBudget;
+    private TickBudget placementBudget;
+    private final ArrayDeque<BlockWriter> pendingWriters = new ArrayDeque<>();
+    private BukkitTask placementTask;
+    private boolean mapTiles;
+    private final Map<TerritoryStructureType, Integer> exclusionRadius = new EnumMap<>(TerritoryStructureType.class);
+    private int minExclusionRadius;
+    private final Map<String, StructureGrid> structureGrids = new HashMap<>();
     final List<Vec2i> inChunkCoords = new ArrayList<>(256); // [0,15]
     private GeneratorStructureCache generatorStructureCache;
     private final List<String> structureWorlds = List.of("structures");
@@ -50,19 +83,117 @@ public final class Generator implements Listener {
                 inChunkCoords.add(new Vec2i(x, y));
             }
         }
+        async = plugin.getConfig().getBoolean("Generator.Async");
+        mapTiles = plugin.getConfig().getBoolean("Generator.MapTiles");
+        minExclusionRadius = Integer.MAX_VALUE;
+        for (TerritoryStructureType type : TerritoryStructureType.values()) {
+            final int radius = plugin.getConfig().getInt("Generator.ExclusionRadius." + type.name(), DEFAULT_EXCLUSION_RADIUS);
+            exclusionRadius.put(type, radius);
+            minExclusionRadius = Math.min(minExclusionRadius, radius);
+        }
+        tickBudget = new TickBudget(plugin.getConfig().getDouble("Generator.TickBudget", MILLIS_PER_TICK),
+                                    plugin.getConfig().getDouble("Generator.TargetMspt", MILLIS_PER_TICK),
+                                    plugin.getConfig().getInt("Generator.MinStepsPerTick", 1));
+        placementBudget = new TickBudget(plugin.getConfig().getDouble("Generator.PlacementBudget", DEFAULT_PLACEMENT_BUDGET),
+                                         plugin.getConfig().getDouble("Generator.TargetMspt", MILLIS_PER_TICK),
+                                         1);
+        final long checkpointInterval = (long) (plugin.getConfig().getDouble("Generator.CheckpointMinutes", 5.0) * 60_000.0);
+        if (async) {
+            executor = Executors.newSingleThreadExecutor(run -> new Thread(run, "Territory Generator"));
+        }
         plugin.getLogger().info("Loading Worlds");
         for (String worldName : plugin.getConfig().getStringList("Generator.Worlds")) {
             World world = Bukkit.getWorld(worldName);
             if (world == null) {
                 throw new IllegalStateException("Generator world not found: " + worldName);
             }
-            worlds.put(worldName, new GeneratorWorld(worldName, world.getWorldFolder(), plugin.getLogger()));
+            GeneratorWorld generatorWorld = new GeneratorWorld(worldName, world.getWorldFolder(), plugin.getLogger());
+            generatorWorld.setCheckpointInterval(checkpointInterval);
+            generatorWorld.loadCheckpoint();
+            worlds.put(worldName, generatorWorld);
         }
         // Load structure worlds
         return this;
     }
 
-    private GeneratorStructureCache getStructureCache() {
+    public void disable() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (placementTask != null) {
+            placementTask.cancel();
+            placementTask = null;
+        }
+        for (BlockWriter writer : pendingWriters) {
+            writer.applyAll();
+        }
+        pendingWriters.clear();
+    }
+
+    /**
+     * Queue the blocks of a placed structure.  They are written over
+     * the following ticks by applyPlacements.
+     */
+    private void queuePlacement(BlockWriter writer) {
+        pendingWriters.add(writer);
+        if (placementTask == null) {
+            placementTask = Bukkit.getScheduler().runTaskTimer(plugin, this::applyPlacements, 1L, 1L);
+        }
+    }
+
+    /**
+     * Write queued blocks, one chunk at a time, until the placement
+     * budget is used up.  At least one chunk is written each tick.
+     * Blocks per tick are reported once the queue runs empty.
+     */
+    private void applyPlacements() {
+        final long budget = placementBudget.getBudget(Bukkit.getAverageTickTime());
+        final long start = System.nanoTime();
+        int blocks = 0;
+        do {
+            BlockWriter writer = pendingWriters.peek();
+            if (writer == null) break;
+            blocks += writer.applyChunk();
+            if (writer.isEmpty()) pendingWriters.poll();
+        } while (System.nanoTime() - start < budget);
+        placementBudget.record(System.nanoTime() - start, blocks);
+        if (pendingWriters.isEmpty()) {
+            placementTask.cancel();
+            placementTask = null;
+            plugin.getLogger().info("[Generator] Placement blocks " + placementBudget.finishStage());
+        }
+    }
+
+    /**
+     * Get the placed structures of a world.  Each cell of the grid is
+     * filled with a query to the structure cache the first time a
+     * chunk near it is decorated, and from then on kept up to date by
+     * generateSurfaceStructure.
+     */
+    private StructureGrid getStructureGrid(World world) {
+        StructureGrid result = structureGrids.get(world.getName());
+        if (result != null) return result;
+        final String worldName = world.getName();
+        final int minY = world.getMinHeight();
+        final int maxY = world.getMaxHeight();
+        result = new StructureGrid((ax, az, bx, bz) -> {
+                List<Cuboid> boxes = new ArrayList<>();
+                for (Structure structure : structureCache().within(worldName, new Cuboid(ax, minY, az, bx, maxY, bz))) {
+                    boxes.add(structure.getBoundingBox());
+                }
+                return boxes;
+            });
+        structureGrids.put(worldName, result);
+        return result;
+    }
+
+    /**
+     * Load the structure cache on first use.  The catalogs are
+     * seeded by the name of the world which needs them first, like
+     * site planning.
+     */
+    private GeneratorStructureCache getStructureCache(World targetWorld) {
         if (generatorStructureCache == null) {
             plugin.getLogger().info("Loading Structure Cache");
             generatorStructureCache = new GeneratorStructureCache();
@@ -73,7 +204,7 @@ public final class Generator implements Listener {
                 }
                 generatorStructureCache.load(world);
             }
-            generatorStructureCache.prepare();
+            generatorStructureCache.prepare(new Random(targetWorld.getName().hashCode()));
         }
         return generatorStructureCache;
     }
@@ -84,11 +215,12 @@ public final class Generator implements Listener {
             World world = event.getWorld();
             GeneratorWorld generatorWorld = worlds.get(world.getName());
             if (generatorWorld == null) return;
-            if (step(world, generatorWorld)) {
+            if (async ? stepAsync(world, generatorWorld) : step(world, generatorWorld)) {
                 event.setCancelled(true);
             }
-        } else if (event.getPass() == 2) {
-            plugin.getLogger().info("[Generator] [" + event.getWorld().getName() + "] " + surfaceStructureCount);
+        } else if (event.getPass() == 2 && generatorStructureCache != null) {
+            plugin.getLogger().info("[Generator] [" + event.getWorld().getName() + "] "
+                                    + generatorStructureCache.getCatalog(TerritoryStructureCategory.SURFACE).getCounts());
         }
     }
 
@@ -98,63 +230,133 @@ public final class Generator implements Listener {
         case 0:
             generatorWorld.loadBiomes();
             generatorWorld.prepareFindZones();
-            generatorWorld.generatorState += 1;
+            generatorWorld.advanceState(1);
             return true;
         case 1:
-            if (!timed(generatorWorld::findZonesStep)) {
-                generatorWorld.generatorState += 1;
+            if (!timed(world, "FindZones", generatorWorld::findZonesStep)) {
+                generatorWorld.advanceState(2);
             }
             return true;
         case 2:
-            if (!timed(generatorWorld::mergeRiversStep)) {
-                generatorWorld.generatorState += 1;
+            if (!timed(world, "MergeRivers", generatorWorld::mergeRiversStep)) {
+                generatorWorld.advanceState(3);
+            } else {
+                generatorWorld.saveCheckpointIfDue();
             }
             return true;
         case 3:
-            if (!timed(() -> generatorWorld.splitLargeZonesStep(1000))) { // magic number!
-                generatorWorld.generatorState += 1;
+            if (!timed(world, "SplitLargeZones", () -> generatorWorld.splitLargeZonesStep(SPLIT_SIZE))) {
+                generatorWorld.advanceState(4);
+            } else {
+                generatorWorld.saveCheckpointIfDue();
             }
             return true;
         case 4:
-            generatorWorld.findEssentialBiomes(100); // magic number!
-            generatorWorld.generatorState += 1;
+            generatorWorld.findEssentialBiomes(ESSENTIAL_SIZE);
+            generatorWorld.advanceState(5);
             return true;
         case 5:
-            if (!timed(() -> generatorWorld.mergeZonesStep(500))) { // magic number!
-                generatorWorld.generatorState += 1;
-                return true;
+            if (!timed(world, "MergeZones", () -> generatorWorld.mergeZonesStep(MERGE_SIZE))) {
+                generatorWorld.advanceState(6);
+            } else {
+                generatorWorld.saveCheckpointIfDue();
             }
             return true;
         case 6:
             generatorWorld.scaleZoneLevels();
-            generatorWorld.generatorState += 1;
+            generatorWorld.advanceState(7);
             return true;
         case 7:
             generatorWorld.saveZones();
-            generatorWorld.generatorState += 1;
+            generatorWorld.advanceState(8);
+            return true;
+        case 8:
+            generatorWorld.planSites();
+            generatorWorld.advanceState(9);
             return true;
         default:
-            generatorWorld.makeImage(0);
-            generatorWorld.drawZones(true, true);
-            generatorWorld.drawZones(false, false);
-            generatorWorld.drawEssentialBiomes();
-            generatorWorld.drawZoneLabels();
-            try {
-                generatorWorld.saveImage(new File("map.png"));
-            } catch (IOException ioe) {
-                ioe.printStackTrace();
-            }
+            saveMap(generatorWorld);
             plugin.getLogger().info("[Generator] [" + world.getName() + "] Done!");
             return false;
         }
     }
 
-    private boolean timed(Supplier<Boolean> fun) {
-        long now = System.nanoTime();
+    /**
+     * Snapshot the biomes on the main thread, then run everything
+     * else on the executor.  The decorator keeps coming back each
+     * tick until the future is done.  A failed pipeline halts the
+     * world: the event stays cancelled, so pass 1 never finishes
+     * without territories.  A restart resumes from the last
+     * checkpoint.
+     * @return true if the event should be cancelled, false otherwise
+     */
+    private boolean stepAsync(World world, GeneratorWorld generatorWorld) {
+        CompletableFuture<Void> future = pipelines.get(world.getName());
+        if (future == null) {
+            if (generatorWorld.generatorState == 0) {
+                plugin.getLogger().info("[Generator] [" + world.getName() + "] Loading biomes");
+                generatorWorld.loadBiomes();
+                generatorWorld.advanceState(1);
+            }
+            future = CompletableFuture.runAsync(() -> runPipeline(generatorWorld), executor);
+            future.whenComplete((result, throwable) -> Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (throwable != null) {
+                            plugin.getLogger().log(Level.SEVERE, "[Generator] [" + world.getName() + "] Failed, generation halted"
+                                                   + " until restart", throwable);
+                        } else {
+                            plugin.getLogger().info("[Generator] [" + world.getName() + "] Done!");
+                        }
+                    }));
+            pipelines.put(world.getName(), future);
+            return true;
+        }
+        return !future.isDone() || future.isCompletedExceptionally();
+    }
+
+    /**
+     * Called on the executor.
+     */
+    private void runPipeline(GeneratorWorld generatorWorld) {
+        generatorWorld.generateTerritories(SPLIT_SIZE, ESSENTIAL_SIZE, MERGE_SIZE);
+        saveMap(generatorWorld);
+    }
+
+    /**
+     * Save either map tiles next to the territory files, or one big
+     * map.png.
+     */
+    private void saveMap(GeneratorWorld generatorWorld) {
+        try {
+            if (mapTiles) {
+                generatorWorld.saveMapTiles(generatorWorld.getMapTilesFolder());
+            } else {
+                generatorWorld.saveMap(new File("map.png"));
+            }
+        } catch (IOException ioe) {
+            plugin.getLogger().log(Level.WARNING, "[Generator] [" + generatorWorld.getWorldName() + "] Saving map failed: "
+                                   + (mapTiles ? generatorWorld.getMapTilesFolder() : new File("map.png")), ioe);
+        }
+    }
+
+    /**
+     * Run steps until the stage is done or the tick budget is used
+     * up.  See TickBudget.
+     * @return true if there is more to do, false otherwise
+     */
+    private boolean timed(World world, String stage, Supplier<Boolean> fun) {
+        final long budget = tickBudget.getBudget(Bukkit.getAverageTickTime());
+        final long start = System.nanoTime();
+        int steps = 0;
+        boolean more;
         do {
-            if (!fun.get()) return false;
-        } while (System.nanoTime() - now < NANOS_PER_TICK);
-        return true;
+            more = fun.get();
+            steps += 1;
+        } while (more && (steps < tickBudget.getMinSteps() || System.nanoTime() - start < budget));
+        tickBudget.record(System.nanoTime() - start, steps);
+        if (!more) {
+            plugin.getLogger().info("[Generator] [" + world.getName() + "] " + stage + " " + tickBudget.finishStage());
+        }
+        return more;
     }
 
     private  static final EnumSet<Material> REJECTED_MATS = EnumSet.noneOf(Material.class);
@@ -166,6 +368,9 @@ public final class Generator implements Listener {
         World world = chunk.getWorld();
         GeneratorWorld generatorWorld = worlds.get(world.getName());
         if (generatorWorld == null) return;
+        // Only planned sites, if there is a plan
+        StructureSites structureSites = generatorWorld.getStructureSites();
+        if (structureSites != null && !structureSites.contains(chunk.getX(), chunk.getZ())) return;
         Territory territory = generatorWorld.getTerritoryWorld().at(chunk);
         BiomeGroup biomeGroup = territory.getBiomeGroup();
         switch (biomeGroup.category) {
@@ -174,12 +379,10 @@ public final class Generator implements Listener {
         }
     }
 
-    private final Map<String, Integer> surfaceStructureCount = new HashMap<>();
-
     /**
      * Surface structures generate on or above Y=63 and will not
-     * tolerate nearby structures on or above 48 within 64 blocks of
-     * the chunk.
+     * tolerate nearby structures on or above 48 within the exclusion
+     * radius of their type around the chunk.
      * @return true if structure was generated, false otherwise
      */
     protected boolean generateSurfaceStructure(Chunk chunk, GeneratorWorld generatorWorld) {
@@ -187,38 +390,50 @@ public final class Generator implements Listener {
         World world = chunk.getWorld();
         Cuboid chunkZone = new Cuboid(baseVec.x, 48, baseVec.z,
                                       baseVec.x + 15, world.getMaxHeight(), baseVec.z + 15);
-        Cuboid exclusionZone = chunkZone.outset(128, 0, 128);
         var chunkVector = Vec2i.of(chunk);
-        if (!structureCache().within(world.getName(), exclusionZone).isEmpty()) {
+        StructureGrid structureGrid = getStructureGrid(world);
+        if (structureGrid.intersects(chunkZone.outset(minExclusionRadius, 0, minExclusionRadius))) {
             return false;
         }
         // Prepare random coords
         Collections.shuffle(inChunkCoords, generatorWorld.random);
-        List<GeneratorStructure> surfaceStructureList = new ArrayList<>(getStructureCache().getStructures(TerritoryStructureCategory.SURFACE));
-        Collections.shuffle(surfaceStructureList, generatorWorld.random);
-        surfaceStructureList.sort((a, b) -> Integer.compare(surfaceStructureCount.getOrDefault(a.getName(), 0),
-                                                            surfaceStructureCount.getOrDefault(b.getName(), 0)));
-        for (GeneratorStructure surfaceStructure : surfaceStructureList) {
-            for (Vec2i inChunkVector : inChunkCoords) {
-                final Vec2i worldXZ = baseVec.add(inChunkVector);
-                Block anchor = world.getHighestBlockAt(worldXZ.x, worldXZ.z, HeightMap.MOTION_BLOCKING_NO_LEAVES);
-                if (anchor.getY() < 63) {
-                    continue;
-                }
-                if (!surfaceStructure.canPlace(anchor)) continue;
+        // Find the surface once, from snapshots, by ground type
+        SurfaceProbe probe = new SurfaceProbe(world);
+        List<Vec3i> anchors = new ArrayList<>(inChunkCoords.size());
+        Map<GroundType, List<Vec3i>> groundAnchors = new EnumMap<>(GroundType.class);
+        for (Vec2i inChunkVector : inChunkCoords) {
+            final Vec2i worldXZ = baseVec.add(inChunkVector);
+            final int y = probe.getSurfaceY(worldXZ.x, worldXZ.z);
+            if (y < 63) continue;
+            Vec3i anchor = Vec3i.of(worldXZ.x, y, worldXZ.z);
+            anchors.add(anchor);
+            groundAnchors.computeIfAbsent(GroundType.of(probe.getType(anchor)), g -> new ArrayList<>()).add(anchor);
+        }
+        if (anchors.isEmpty()) return false;
+        groundAnchors.put(GroundType.ANY, anchors);
+        StructureCatalog catalog = getStructureCache(world).getCatalog(TerritoryStructureCategory.SURFACE);
+        for (GeneratorStructure surfaceStructure : catalog.select(groundAnchors.keySet())) {
+            final int radius = exclusionRadius.get(surfaceStructure.getType());
+            Cuboid exclusionZone = chunkZone.outset(radius, 0, radius);
+            if (radius > minExclusionRadius && structureGrid.intersects(exclusionZone)) continue;
+            for (Vec3i anchor : groundAnchors.get(surfaceStructure.getGroundType())) {
+                if (!surfaceStructure.canPlace(probe.getType(anchor))) continue;
                 Cuboid boundingBox = surfaceStructure.createTargetBoundingBox(anchor);
-                if (!surfaceStructure.canPlace(world, boundingBox).isSuccessful()) {
+                if (!surfaceStructure.canPlace(probe, boundingBox).isSuccessful()) {
                     continue;
                 }
-                Structure structure = surfaceStructure.place(world, boundingBox, chunkVector);
+                BlockWriter writer = new BlockWriter(world);
+                Structure structure = surfaceStructure.place(writer, probe, boundingBox, chunkVector);
                 if (structure == null) {
                     continue;
                 }
+                queuePlacement(writer);
                 plugin.getLogger().info("[Generator] Placed structure " + structure
                                         + " chunk:" + chunkVector
                                         + " excl:" + exclusionZone);
                 structureCache().addStructure(structure);
-                surfaceStructureCount.put(surfaceStructure.getName(), surfaceStructureCount.getOrDefault(surfaceStructure.getName(), 0) + 1);
+                structureGrid.add(structure.getBoundingBox());
+                catalog.recordPlacement(surfaceStructure);
                 return true;
             }
         }
@@ -0,0 +1,168 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.core.struct.Vec2i;
+import com.cavetale.territory.BiomeGroup;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary snapshot of a GeneratorWorld between two steps, so the
+ * pipeline can resume after a restart.
+ *
+ * Layout, deflated, big endian:
+ * - Header: magic, version, generator state, max level
+ * - Grid: ax, az, width, height, then one biome byte per chunk
+ * - Zones: count, then for each: biome group, essential, level, and
+ *   the sorted chunk indexes as runs of start and length
+ * - Essential biomes: count, then biome group, x and z of each
+ *
+ * Zones are not written while they are still being found, because
+ * the labels are not part of the snapshot.  That stage starts over.
+ * Stage internal queues are rebuilt on resume.
+ */
+final class GeneratorCheckpoint {
+    static final String FILE_NAME = "generator.checkpoint";
+    private static final int MAGIC = 0x54474350; // TGCP
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final BiomeGroup[] BIOME_GROUPS = BiomeGroup.values();
+
+    private GeneratorCheckpoint() { }
+
+    /**
+     * Write to a temporary file and move it in place.
+     */
+    static void save(GeneratorWorld world, File file) throws IOException {
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(tmpFile),
+                                                                                                     deflater),
+                                                                            BUFFER_SIZE))) {
+            final ChunkGrid grid = world.grid;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(world.generatorState);
+            out.writeInt(world.maxLevel);
+            out.writeInt(grid.getAx());
+            out.writeInt(grid.getAz());
+            out.writeInt(grid.getWidth());
+            out.writeInt(grid.getHeight());
+            out.write(grid.biomes);
+            List<GeneratorZone> zones = new ArrayList<>();
+            if (world.generatorState > 1 && world.zones != null) {
+                for (GeneratorZone zone : world.zones) {
+                    if (!zone.isRemoved() && zone.size() > 0) zones.add(zone);
+                }
+            }
+            out.writeInt(zones.size());
+            for (GeneratorZone zone : zones) {
+                out.writeByte(zone.biomeGroup.ordinal());
+                out.writeBoolean(zone.essential);
+                out.writeInt(zone.level);
+                writeRuns(out, zone.chunks.toArray());
+            }
+            Map<BiomeGroup, Vec2i> essentialBiomes = world.essentialBiomes != null
+                ? world.essentialBiomes
+                : Map.of();
+            out.writeInt(essentialBiomes.size());
+            for (Map.Entry<BiomeGroup, Vec2i> entry : essentialBiomes.entrySet()) {
+                out.writeByte(entry.getKey().ordinal());
+                out.writeInt(entry.getValue().x);
+                out.writeInt(entry.getValue().z);
+            }
+        } finally {
+            deflater.end();
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Consecutive indexes, mostly within one row, become one run.
+     */
+    private static void writeRuns(DataOutputStream out, int[] chunks) throws IOException {
+        Arrays.sort(chunks);
+        int runs = 0;
+        for (int i = 0; i < chunks.length; i += 1) {
+            if (i == 0 || chunks[i] != chunks[i - 1] + 1) runs += 1;
+        }
+        out.writeInt(runs);
+        int start = 0;
+        for (int i = 1; i <= chunks.length; i += 1) {
+            if (i < chunks.length && chunks[i] == chunks[i - 1] + 1) continue;
+            out.writeInt(chunks[start]);
+            out.writeInt(i - start);
+            start = i;
+        }
+    }
+
+    /**
+     * Restore the grid, zones and state of a world.
+     */
+    static void load(GeneratorWorld world, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file)),
+                                                                             BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a generator checkpoint: " + file);
+            final int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unknown version " + version + ": " + file);
+            final int generatorState = in.readInt();
+            final int maxLevel = in.readInt();
+            final int ax = in.readInt();
+            final int az = in.readInt();
+            final int width = in.readInt();
+            final int height = in.readInt();
+            ChunkGrid grid = new ChunkGrid(ax, az, width, height);
+            in.readFully(grid.biomes);
+            final int zoneCount = in.readInt();
+            List<GeneratorZone> zones = new ArrayList<>(zoneCount);
+            for (int i = 0; i < zoneCount; i += 1) {
+                GeneratorZone zone = grid.createZone(BIOME_GROUPS[in.readByte()]);
+                zone.essential = in.readBoolean();
+                zone.level = in.readInt();
+                final int runs = in.readInt();
+                for (int j = 0; j < runs; j += 1) {
+                    final int start = in.readInt();
+                    final int length = in.readInt();
+                    for (int index = start; index < start + length; index += 1) {
+                        zone.addChunk(index);
+                    }
+                }
+                zones.add(zone);
+            }
+            final int essentialCount = in.readInt();
+            Map<BiomeGroup, Vec2i> essentialBiomes = new EnumMap<>(BiomeGroup.class);
+            for (int i = 0; i < essentialCount; i += 1) {
+                BiomeGroup biomeGroup = BIOME_GROUPS[in.readByte()];
+                final int x = in.readInt();
+                final int z = in.readInt();
+                essentialBiomes.put(biomeGroup, new Vec2i(x, z));
+            }
+            world.loadBiomes(grid);
+            world.maxLevel = maxLevel;
+            world.essentialBiomes = essentialBiomes;
+            if (generatorState <= 1) {
+                world.prepareFindZones();
+                world.generatorState = 1;
+            } else {
+                world.zones = zones;
+                world.generatorState = generatorState;
+            }
+        }
+    }
+}
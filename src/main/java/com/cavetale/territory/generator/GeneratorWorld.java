@@ -4,31 +4,35 @@ import com.cavetale.core.struct.Vec2i;
 import com.cavetale.core.util.Json;
 import com.cavetale.territory.BiomeGroup;
 import com.cavetale.territory.manager.TerritoryWorld;
+import com.cavetale.territory.struct.StructureSites;
 import com.cavetale.territory.struct.Territory;
+import com.cavetale.territory.struct.TerritoryIndex;
+import com.cavetale.territory.util.IndexedMinHeap;
+import com.cavetale.territory.util.IntList;
 import com.cavetale.territory.util.Vectors;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import javax.imageio.ImageIO;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
-import org.bukkit.block.Biome;
-import static com.cavetale.structure.StructurePlugin.structureCache;
 import static com.cavetale.territory.manager.TerritoryWorld.TERRITORY_FOLDER;
 
 /**
@@ -44,9 +48,12 @@ import static com.cavetale.territory.manager.TerritoryWorld.TERRITORY_FOLDER;
  * gameplay server.
  *
  * It can also be used by a standalone app. Not Paper required.
+ * Standalone apps read the biomes with a StructuresDbBiomeSource.
  */
 @Getter @RequiredArgsConstructor
 public final class GeneratorWorld {
+    static final int FIND_ZONES_ROWS = 64;
+    static final String MAP_TILES_FOLDER = "tiles";
     protected final String worldName;
     private final File folder;
     private final Logger logger;
@@ -57,69 +64,88 @@ public final class GeneratorWorld {
     int bz = 0;
     int width;
     int height;
+    @Setter BiomeSource biomeSource;
     // Find Zones
-    Map<Vec2i, Biome> biomes;
-    Set<Vec2i> findZonesPool;
+    ChunkGrid grid;
+    ZoneLabeler zoneLabeler;
+    int findZonesCursor;
     List<GeneratorZone> zones;
-    Map<Vec2i, GeneratorZone> zoneMap;
+    // Split Large Zones
+    @Setter SplitStrategy splitStrategy = SplitStrategy.BISECT;
+    // Scale Zone Levels
+    @Setter LevelMode levelMode = LevelMode.HOPS;
+    // Merge Zones
+    IndexedMinHeap mergeZonesQueue;
     Map<BiomeGroup, Vec2i> essentialBiomes;
     // Draw
     BufferedImage img;
+    int[] pixels;
+    MapRenderer mapRenderer;
     Graphics gfx;
     int generatorState;
     int maxLevel;
+    // Checkpoints
+    @Setter long checkpointInterval;
+    long lastCheckpoint;
     // Used in late stage to generate structures
     protected TerritoryWorld territoryWorld;
+    protected StructureSites structureSites;
+    private boolean structureSitesLoaded;
 
     public World getWorld() {
         return Bukkit.getWorld(worldName);
     }
 
+    /**
+     * Load the biomes from the biome source, or from the structure
+     * cache if there is none.
+     */
     public void loadBiomes() {
-        biomes = structureCache().allBiomes(getWorld());
-        for (Map.Entry<Vec2i, Biome> entry : biomes.entrySet()) {
-            Vec2i vec = entry.getKey();
-            Biome biome = entry.getValue();
-            BiomeGroup biomeGroup = BiomeGroup.of(biome);
-        }
-        // Determine world dimensions.  Should we use the WorldBorder
-        // instead?
-        for (Vec2i vec : biomes.keySet()) {
-            if (vec.x < ax) ax = vec.x;
-            if (vec.x > bx) bx = vec.x;
-            if (vec.z < az) az = vec.z;
-            if (vec.z > bz) bz = vec.z;
-        }
-        width = bx - ax + 1;
-        height = bz - az + 1;
+        BiomeSource source = biomeSource != null
+            ? biomeSource
+            : new StructureCacheBiomeSource(getWorld());
+        loadBiomes(source.createGrid());
+    }
+
+    /**
+     * Use a grid whose biomes are already filled in.
+     */
+    public void loadBiomes(ChunkGrid newGrid) {
+        grid = newGrid;
+        ax = grid.getAx();
+        az = grid.getAz();
+        width = grid.getWidth();
+        height = grid.getHeight();
+        bx = ax + width - 1;
+        bz = az + height - 1;
     }
 
     public void makeImage(int backgroundColor) {
         img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        for (int y = 0; y < height; y += 1) {
-            for (int x = 0; x < width; x += 1) {
-                img.setRGB(x, y, backgroundColor);
-            }
-        }
+        pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        mapRenderer = new MapRenderer(grid, pixels);
+        mapRenderer.fill(backgroundColor);
         gfx = img.getGraphics();
     }
 
     public void drawBiomes()  {
-        for (Map.Entry<Vec2i, Biome> entry : biomes.entrySet()) {
-            Vec2i vec = entry.getKey();
-            BiomeGroup biomeGroup = BiomeGroup.of(entry.getValue());
-            int x = vec.x - ax;
-            int y = vec.z - az;
-            img.setRGB(x, y, biomeGroup.color.getRGB());
-        }
+        mapRenderer.drawBiomes();
     }
 
     public void drawZones(boolean fill, boolean dynamicColor) {
+        mapRenderer.drawZones(zoneColors(dynamicColor), fill);
+    }
+
+    /**
+     * The ARGB color of each zone id, or 0 for none.
+     * @param dynamicColor true to shade by level, false to use the
+     *   plain biome color
+     */
+    private int[] zoneColors(boolean dynamicColor) {
+        int[] colors = new int[grid.getZoneIdLimit()];
         for (GeneratorZone zone : zones) {
             Color color;
             if (dynamicColor) {
-                Vec2i center = zone.getCenter();
-                float east = (float) (center.x - ax) / (float) width;
                 float[] hsb = Color.RGBtoHSB(zone.biomeGroup.color.getRed(),
                                              zone.biomeGroup.color.getGreen(),
                                              zone.biomeGroup.color.getBlue(),
@@ -129,16 +155,9 @@ public final class GeneratorWorld {
             } else {
                 color = zone.biomeGroup.color;
             }
-            if (fill) {
-                for (Vec2i vec : zone.chunks) {
-                    pixel(color, vec.x, vec.z);
-                }
-            } else {
-                for (Vec2i vec : zone.getBorderChunks()) {
-                    pixel(color, vec.x, vec.z);
-                }
-            }
+            colors[zone.gridId] = color.getRGB();
         }
+        return colors;
     }
 
     public void drawZoneLabels() {
@@ -167,10 +186,11 @@ public final class GeneratorWorld {
             if (zone.size() > maxSize) continue;
             int left = Integer.MAX_VALUE;
             int top = Integer.MAX_VALUE;
-            for (Vec2i vec : zone.chunks) {
-                if (left > vec.x) left = vec.x;
-                if (top > vec.z) top = vec.z;
-                img.setRGB(vec.x - ax, vec.z - az, zone.biomeGroup.color.getRGB());
+            for (int i = 0; i < zone.chunks.size(); i += 1) {
+                int index = zone.chunks.get(i);
+                if (left > grid.x(index)) left = grid.x(index);
+                if (top > grid.z(index)) top = grid.z(index);
+                pixel(zone.biomeGroup.color, index);
             }
             print(zone.biomeGroup.color, zone.biomeGroup.name(), left, top);
         }
@@ -214,7 +234,11 @@ public final class GeneratorWorld {
 
     private void pixel(Color color, int x, int y) {
         if (x < ax || x > bx || y < az || y > bz) return;
-        img.setRGB(x - ax, y - az, color.getRGB());
+        pixels[(x - ax) + (y - az) * width] = color.getRGB();
+    }
+
+    private void pixel(Color color, int index) {
+        pixels[index] = color.getRGB();
     }
 
     public int findZones() {
@@ -228,35 +252,28 @@ public final class GeneratorWorld {
 
     public void prepareFindZones() {
         zones = new ArrayList<>();
-        findZonesPool = new HashSet<>(biomes.keySet());
-        zoneMap = new HashMap<>();
+        grid.clearZones();
+        zoneLabeler = new ZoneLabeler(grid);
+        findZonesCursor = 0;
     }
 
+    /**
+     * The first step labels the whole grid in parallel.  Each
+     * subsequent step creates the zones of a few rows.
+     */
     public boolean findZonesStep() {
-        if (findZonesPool.isEmpty()) {
+        if (!zoneLabeler.isLabeled()) {
+            zoneLabeler.label();
+            return true;
+        }
+        if (findZonesCursor >= height) {
+            zoneLabeler = null;
             logger.info("FindZones: " + zones.size() + " Zones");
             return false;
         }
-        Vec2i pivotVec = findZonesPool.iterator().next();
-        findZonesPool.remove(pivotVec);
-        BiomeGroup pivotBiomeGroup = BiomeGroup.of(biomes.get(pivotVec));
-        List<Vec2i> zoneChunks = new ArrayList<>();
-        zoneChunks.add(pivotVec);
-        Set<Vec2i> done = new HashSet<>();
-        for (int i = 0; i < zoneChunks.size(); i += 1) {
-            Vec2i vec = zoneChunks.get(i);
-            for (Vec2i nbor : Vectors.neighbors(vec)) {
-                BiomeGroup nborBiomeGroup = BiomeGroup.of(biomes.get(nbor));
-                if (nborBiomeGroup != null && nborBiomeGroup == pivotBiomeGroup && !done.contains(nbor)) {
-                    findZonesPool.remove(nbor);
-                    done.add(nbor);
-                    zoneChunks.add(nbor);
-                }
-            }
-        }
-        GeneratorZone generatorZone = new GeneratorZone(pivotBiomeGroup, zoneChunks);
-        generatorZone.putIn(zoneMap);
-        zones.add(generatorZone);
+        final int toRow = Math.min(height, findZonesCursor + FIND_ZONES_ROWS);
+        zoneLabeler.createZones(findZonesCursor, toRow, zones);
+        findZonesCursor = toRow;
         return true;
     }
 
@@ -268,32 +285,53 @@ public final class GeneratorWorld {
         return steps;
     }
 
+    /**
+     * Queue all zones by size.  Ties are broken by their position in
+     * the zone list, which is kept in the lower half of the key.
+     */
+    private void prepareMergeZones() {
+        mergeZonesQueue = new IndexedMinHeap(grid.getZoneIdLimit());
+        for (int i = 0; i < zones.size(); i += 1) {
+            GeneratorZone zone = zones.get(i);
+            mergeZonesQueue.add(zone.gridId, mergeZonesKey(zone.size(), i));
+        }
+    }
+
+    private static long mergeZonesKey(int size, int order) {
+        return ((long) size << 32) | (long) order;
+    }
+
+    /**
+     * Remove all merged zones from the zone list at once.
+     */
+    private void finishMergeZones() {
+        mergeZonesQueue = null;
+        zones.removeIf(GeneratorZone::isRemoved);
+    }
+
     public boolean mergeZonesStep(int maxSize) {
+        if (mergeZonesQueue == null) prepareMergeZones();
         // Find smallest
-        GeneratorZone zone = null;
-        for (GeneratorZone z : zones) {
-            if (zone == null || z.size() < zone.size()) zone = z;
+        if (mergeZonesQueue.isEmpty()) {
+            finishMergeZones();
+            return false;
         }
-        if (zone == null) return false;
-        if (zone.size() > maxSize) return false;
-        List<GeneratorZone> nbors = new ArrayList<>();
-        for (Vec2i vec : zone.getBorderChunks()) {
-            for (Vec2i vec2 : Vectors.neighbors(vec)) {
-                GeneratorZone nbor = zoneMap.get(vec2);
-                if (nbor == null || zone == nbor) continue;
-                nbors.add(nbor);
-            }
+        GeneratorZone zone = grid.getZone(mergeZonesQueue.peek());
+        if (zone.size() > maxSize) {
+            finishMergeZones();
+            return false;
         }
-        if (nbors.isEmpty()) {
-            zones.remove(zone);
+        mergeZonesQueue.poll();
+        GeneratorZone nbor = zone.getLongestBorderNeighbor();
+        if (nbor == null) {
+            grid.removeZone(zone);
             return true;
         }
-        GeneratorZone nbor = nbors.get(0);
-        zone.removeFrom(zoneMap);
         nbor.addAll(zone);
-        nbor.putIn(zoneMap);
         nbor.essential = nbor.essential || zone.essential;
-        zones.remove(zone);
+        grid.removeZone(zone);
+        final long nborOrder = mergeZonesQueue.getKey(nbor.gridId) & 0xFFFFFFFFL;
+        mergeZonesQueue.update(nbor.gridId, mergeZonesKey(nbor.size(), (int) nborOrder));
         return true;
     }
 
@@ -307,25 +345,85 @@ public final class GeneratorWorld {
 
     /**
      * Merge all rivers into their neighboring zones.
+     *
+     * One multi source breadth first search, starting at every river
+     * chunk next to a non-river zone, hands each reachable river
+     * chunk to the nearest non-river zone.  Ties between zones at the
+     * same distance go to the lower grid id, regardless of search
+     * order.  Chunks change owners in bulk once the search is done.
+     *
+     * @return true if any chunk was claimed, false otherwise.  Rivers
+     *   which remain do not touch any other zone.
      */
     public boolean mergeRiversStep() {
-        boolean result = false;
-        for (GeneratorZone zone : new ArrayList<>(zones)) {
-            if (zone.biomeGroup == BiomeGroup.RIVER) continue;
-            for (Vec2i chunk : zone.getBorderChunks()) {
-                for (Vec2i chunk2 : Vectors.neighbors(chunk)) {
-                    GeneratorZone nbor = zoneMap.get(chunk2);
-                    if (nbor == null || nbor == zone) continue;
-                    if (nbor.biomeGroup != BiomeGroup.RIVER) continue;
-                    zone.addChunk(chunk2);
-                    nbor.removeChunk(chunk2);
-                    zoneMap.put(chunk2, zone);
-                    if (nbor.size() == 0) zones.remove(nbor);
-                    result = true;
+        final int[] claims = new int[grid.size()];
+        IntList claimed = new IntList();
+        IntList frontier = new IntList();
+        IntList next = new IntList();
+        // Sources
+        for (GeneratorZone river : zones) {
+            if (river.biomeGroup != BiomeGroup.RIVER) continue;
+            for (int i = 0; i < river.chunks.size(); i += 1) {
+                final int index = river.chunks.get(i);
+                int claim = ChunkGrid.NO_ZONE;
+                for (int dir = 0; dir < 4; dir += 1) {
+                    final int nbor = grid.neighbor(index, dir);
+                    if (nbor < 0 || !isLandChunk(nbor)) continue;
+                    final int nborId = grid.zones[nbor];
+                    if (claim == ChunkGrid.NO_ZONE || nborId < claim) claim = nborId;
+                }
+                if (claim == ChunkGrid.NO_ZONE) continue;
+                claims[index] = claim;
+                frontier.add(index);
+            }
+        }
+        // Expand ring by ring
+        while (!frontier.isEmpty()) {
+            claimed.addAll(frontier);
+            final int stamp = grid.newMark();
+            next.clear();
+            for (int i = 0; i < frontier.size(); i += 1) {
+                final int index = frontier.get(i);
+                final int claim = claims[index];
+                for (int dir = 0; dir < 4; dir += 1) {
+                    final int nbor = grid.neighbor(index, dir);
+                    if (nbor < 0 || !isRiverChunk(nbor)) continue;
+                    if (claims[nbor] == ChunkGrid.NO_ZONE) {
+                        claims[nbor] = claim;
+                        grid.mark(nbor, stamp);
+                        next.add(nbor);
+                    } else if (grid.isMarked(nbor, stamp) && claim < claims[nbor]) {
+                        claims[nbor] = claim;
+                    }
                 }
             }
+            IntList swap = frontier;
+            frontier = next;
+            next = swap;
+        }
+        if (claimed.isEmpty()) return false;
+        // Move chunks
+        for (int i = 0; i < claimed.size(); i += 1) {
+            final int index = claimed.get(i);
+            grid.getZoneAt(index).removeChunk(index);
+            grid.getZone(claims[index]).addChunk(index);
         }
-        return result;
+        zones.removeIf(zone -> {
+                if (zone.biomeGroup != BiomeGroup.RIVER || zone.size() > 0) return false;
+                grid.removeZone(zone);
+                return true;
+            });
+        return true;
+    }
+
+    private boolean isRiverChunk(int index) {
+        GeneratorZone zone = grid.getZoneAt(index);
+        return zone != null && zone.biomeGroup == BiomeGroup.RIVER;
+    }
+
+    private boolean isLandChunk(int index) {
+        GeneratorZone zone = grid.getZoneAt(index);
+        return zone != null && zone.biomeGroup != BiomeGroup.RIVER;
     }
 
     public int splitLargeZones(int preferredSize) {
@@ -334,7 +432,70 @@ public final class GeneratorWorld {
         return steps;
     }
 
+    /**
+     * How splitLargeZones cuts up oversized zones.
+     */
+    public enum SplitStrategy {
+        /**
+         * Balanced parts by recursive coordinate bisection, all
+         * zones at once.  See ZonePartitioner.
+         */
+        BISECT,
+        /**
+         * Grow one new zone at a time from a random frontier.
+         */
+        RANDOM_GROW;
+    }
+
     public boolean splitLargeZonesStep(int preferredSize) {
+        return switch (splitStrategy) {
+        case BISECT -> splitLargeZonesBisect(preferredSize);
+        case RANDOM_GROW -> splitLargeZonesRandomGrow(preferredSize);
+        };
+    }
+
+    /**
+     * Partition all oversized zones in parallel, then apply the
+     * parts to the grid on this thread.
+     */
+    private boolean splitLargeZonesBisect(int preferredSize) {
+        List<GeneratorZone> largeZones = new ArrayList<>();
+        for (GeneratorZone zone : zones) {
+            if (zone.size() >= preferredSize * 2) largeZones.add(zone);
+        }
+        if (largeZones.isEmpty()) return false;
+        final int gridWidth = grid.getWidth();
+        List<ZonePartitioner> partitioners = largeZones.stream()
+            .map(zone -> new ZonePartitioner(gridWidth, zone.chunks.toArray()))
+            .collect(Collectors.toList());
+        List<IntList> partitions = partitioners.parallelStream()
+            .map(partitioner -> partitioner.partition(preferredSize))
+            .collect(Collectors.toList());
+        for (int i = 0; i < largeZones.size(); i += 1) {
+            GeneratorZone zone = largeZones.get(i);
+            int[] chunks = partitioners.get(i).getChunks();
+            IntList ends = partitions.get(i);
+            List<GeneratorZone> parts = new ArrayList<>();
+            parts.add(zone);
+            // The first part remains with the original zone
+            for (int part = 1; part < ends.size(); part += 1) {
+                GeneratorZone newZone = grid.createZone(zone.biomeGroup);
+                newZone.essential = zone.essential;
+                for (int j = ends.get(part - 1); j < ends.get(part); j += 1) {
+                    zone.removeChunk(chunks[j]);
+                    newZone.addChunk(chunks[j]);
+                }
+                zones.add(newZone);
+                parts.add(newZone);
+            }
+            for (GeneratorZone part : parts) {
+                splitIfNecessary(part);
+            }
+        }
+        return true;
+    }
+
+    private boolean splitLargeZonesRandomGrow(int preferredSize) {
         GeneratorZone zone = null;
         // Find first
         for (GeneratorZone z : zones) {
@@ -343,59 +504,97 @@ public final class GeneratorWorld {
             break;
         }
         if (zone == null) return false;
-        Vec2i dim = Vectors.dimensions(zone.chunks);
-        Vec2i start = dim.x >= dim.z
-            ? Vectors.minX(zone.chunks)
-            : Vectors.minZ(zone.chunks);
-        GeneratorZone newZone = new GeneratorZone(zone.biomeGroup, List.of());
+        // Find the chunk with the lowest coordinate along the
+        // longer axis of the zone
+        int minX = -1;
+        int minZ = -1;
+        int ax = Integer.MAX_VALUE;
+        int bx = Integer.MIN_VALUE;
+        int az = Integer.MAX_VALUE;
+        int bz = Integer.MIN_VALUE;
+        for (int i = 0; i < zone.chunks.size(); i += 1) {
+            int index = zone.chunks.get(i);
+            int x = grid.x(index);
+            int z = grid.z(index);
+            if (x < ax) {
+                ax = x;
+                minX = index;
+            }
+            if (z < az) {
+                az = z;
+                minZ = index;
+            }
+            if (x > bx) bx = x;
+            if (z > bz) bz = z;
+        }
+        int start = bx - ax >= bz - az ? minX : minZ;
+        GeneratorZone newZone = grid.createZone(zone.biomeGroup);
         zones.add(newZone);
-        List<Vec2i> todo = new ArrayList<>();
+        IntList todo = new IntList();
         todo.add(start);
         int finalSize = Math.min(preferredSize, zone.size() / 2);
         while (!todo.isEmpty() && newZone.size() < finalSize) {
-            Vec2i chunk = todo.remove(random.nextInt(todo.size()));
+            int chunk = todo.removeAt(random.nextInt(todo.size()));
             if (!zone.containsChunk(chunk)) continue;
             zone.removeChunk(chunk);
             newZone.addChunk(chunk);
-            zoneMap.put(chunk, newZone);
-            todo.addAll(Vectors.neighbors(chunk));
+            for (int dir = 0; dir < 4; dir += 1) {
+                int nbor = grid.neighbor(chunk, dir);
+                if (nbor >= 0) todo.add(nbor);
+            }
         }
         splitIfNecessary(zone);
         return true;
     }
 
+    /**
+     * Split a zone into its connected components.  The first
+     * component remains with the original zone.
+     */
     private boolean splitIfNecessary(GeneratorZone zone) {
-        List<Set<Vec2i>> list = new ArrayList<>();
-        Set<Vec2i> allChunks = new HashSet<>(zone.chunks);
-        while (!allChunks.isEmpty()) {
-            Set<Vec2i> currentSet = new HashSet<>();
-            Vec2i start = allChunks.iterator().next();
-            currentSet.add(start);
-            list.add(currentSet);
-            Set<Vec2i> todo = new HashSet<>();
-            todo.add(start);
-            while (!todo.isEmpty()) {
-                Vec2i vec = todo.iterator().next();
-                todo.remove(vec);
-                if (!allChunks.contains(vec)) continue;
-                allChunks.remove(vec);
-                currentSet.add(vec);
-                todo.addAll(Vectors.neighbors(vec));
+        if (zone.size() == 0) return false;
+        final int stamp = grid.newMark();
+        IntList todo = new IntList();
+        int reached = floodMark(zone, zone.chunks.get(0), stamp, todo);
+        if (reached == zone.size()) return false;
+        IntList allChunks = new IntList(zone.size());
+        allChunks.addAll(zone.chunks);
+        for (int i = 0; i < allChunks.size(); i += 1) {
+            int start = allChunks.get(i);
+            if (grid.isMarked(start, stamp)) continue;
+            GeneratorZone newZone = grid.createZone(zone.biomeGroup);
+            newZone.essential = zone.essential;
+            floodMark(zone, start, stamp, todo);
+            for (int j = 0; j < todo.size(); j += 1) {
+                zone.removeChunk(todo.get(j));
+                newZone.addChunk(todo.get(j));
             }
-        }
-        if (list.size() < 2) return false;
-        zones.remove(zone);
-        zone.removeFrom(zoneMap);
-        for (Set<Vec2i> set : list) {
-            GeneratorZone newZone = new GeneratorZone(zone.biomeGroup, List.of());
-            newZone.addAllChunks(set);
             zones.add(newZone);
-            newZone.essential = zone.essential;
-            newZone.putIn(zoneMap);
         }
         return true;
     }
 
+    /**
+     * Mark all chunks of a zone which are connected to the start
+     * chunk.  The list will contain all marked chunks.
+     * @return the number of chunks marked
+     */
+    private int floodMark(GeneratorZone zone, int start, int stamp, IntList list) {
+        list.clear();
+        list.add(start);
+        grid.mark(start, stamp);
+        for (int i = 0; i < list.size(); i += 1) {
+            int index = list.get(i);
+            for (int dir = 0; dir < 4; dir += 1) {
+                int nbor = grid.neighbor(index, dir);
+                if (nbor < 0 || !zone.containsChunk(nbor) || grid.isMarked(nbor, stamp)) continue;
+                grid.mark(nbor, stamp);
+                list.add(nbor);
+            }
+        }
+        return list.size();
+    }
+
     /**
      * Find each biome closest to the center, preferring ones that
      * have the preferred size.
@@ -425,45 +624,101 @@ public final class GeneratorWorld {
         }
     }
 
+    /**
+     * How scaleZoneLevels measures the distance between neighboring
+     * zones.
+     */
+    public enum LevelMode {
+        /**
+         * Each neighbor is one level further away.
+         */
+        HOPS,
+        /**
+         * Levels grow with the chunk distance between zone centers.
+         * One level is the average distance between neighbors.
+         */
+        DISTANCE;
+    }
+
+    /**
+     * Assign each zone its level, which is its distance from the
+     * nearest essential zone.  This is a multi source Dijkstra over
+     * the zone adjacency.  Zones which cannot be reached get the
+     * highest level.
+     */
     public void scaleZoneLevels() {
-        List<GeneratorZone> scaledZones = new ArrayList<>();
+        final int limit = grid.getZoneIdLimit();
+        IndexedMinHeap queue = new IndexedMinHeap(limit);
+        boolean[] visited = new boolean[limit];
         for (GeneratorZone zone : zones) {
-            zone.computeNeighbors(zoneMap);
-            if (zone.essential) {
-                zone.level = 0;
-                scaledZones.add(zone);
-            }
+            if (zone.essential) queue.add(zone.gridId, distanceKey(0.0));
         }
-        if (scaledZones.isEmpty()) throw new IllegalStateException("Not starter zones!");
-        int distance = 0;
-        while (scaledZones.size() < zones.size()) {
-            logger.info("[GeneratorWorld] [" + worldName + "] ScaleZoneLevels"
-                        + " dist:" + distance
-                        + " prog:" + scaledZones.size() + "/" + zones.size());
-            distance += 1;
-            boolean progress = false;
-            for (GeneratorZone scaled : List.copyOf(scaledZones)) {
-                for (GeneratorZone newZone : scaled.neighbors) {
-                    if (scaledZones.contains(newZone)) continue;
-                    newZone.level = distance;
-                    scaledZones.add(newZone);
-                    progress = true;
-                }
+        if (queue.isEmpty()) throw new IllegalStateException("Not starter zones!");
+        final double levelDistance = levelMode == LevelMode.DISTANCE
+            ? averageNeighborDistance()
+            : 1.0;
+        int reached = 0;
+        maxLevel = 0;
+        while (!queue.isEmpty()) {
+            final double distance = Double.longBitsToDouble(queue.peekKey());
+            final GeneratorZone zone = grid.getZone(queue.poll());
+            visited[zone.gridId] = true;
+            reached += 1;
+            zone.level = (int) Math.round(distance / levelDistance);
+            if (zone.level > maxLevel) maxLevel = zone.level;
+            for (int slot = 0; slot < zone.borders.capacity(); slot += 1) {
+                final int nborId = zone.borders.keyAt(slot);
+                if (nborId == 0 || visited[nborId]) continue;
+                final double weight = levelMode == LevelMode.DISTANCE
+                    ? centerDistance(zone, grid.getZone(nborId))
+                    : 1.0;
+                queue.offer(nborId, distanceKey(distance + weight));
             }
-            if (!progress) {
-                List<GeneratorZone> unscaled = new ArrayList<>(zones);
-                unscaled.removeAll(scaledZones);
-                Map<Vec2i, BiomeGroup> unscaledVecs = new HashMap<>();
-                for (GeneratorZone it : unscaled) unscaledVecs.put(it.computeCenter(), it.biomeGroup);
-                logger.severe("No progress: " + unscaledVecs);
-                break;
+        }
+        if (reached < zones.size()) {
+            // Set all remaining zones to max level.
+            maxLevel += 1;
+            Map<Vec2i, BiomeGroup> unscaledVecs = new HashMap<>();
+            for (GeneratorZone zone : zones) {
+                if (visited[zone.gridId]) continue;
+                zone.level = maxLevel;
+                unscaledVecs.put(zone.getCenter(), zone.biomeGroup);
             }
+            logger.severe("No progress: " + unscaledVecs);
         }
-        // Set all remaining zones to max level.
+        logger.info("[GeneratorWorld] [" + worldName + "] ScaleZoneLevels"
+                    + " mode:" + levelMode
+                    + " zones:" + reached + "/" + zones.size()
+                    + " maxLevel:" + maxLevel);
+    }
+
+    /**
+     * Non-negative doubles sort just like their bits.
+     */
+    private static long distanceKey(double distance) {
+        return Double.doubleToLongBits(distance);
+    }
+
+    private static double centerDistance(GeneratorZone a, GeneratorZone b) {
+        Vec2i ca = a.getCenter();
+        Vec2i cb = b.getCenter();
+        final double dx = ca.x - cb.x;
+        final double dz = ca.z - cb.z;
+        return Math.sqrt(dx * dx + dz * dz);
+    }
+
+    private double averageNeighborDistance() {
+        double sum = 0.0;
+        long count = 0;
         for (GeneratorZone zone : zones) {
-            if (scaledZones.contains(zone)) continue;
-            zone.level = distance + 1;
+            for (int slot = 0; slot < zone.borders.capacity(); slot += 1) {
+                final int nborId = zone.borders.keyAt(slot);
+                if (nborId == 0) continue;
+                sum += centerDistance(zone, grid.getZone(nborId));
+                count += 1;
+            }
         }
+        return count > 0 && sum > 0.0 ? sum / (double) count : 1.0;
     }
 
     public void saveZones() {
@@ -477,12 +732,206 @@ public final class GeneratorWorld {
                     : Integer.compare(a.level, b.level);
             });
         int id = 0;
+        List<Territory> territories = new ArrayList<>(zones.size());
         for (GeneratorZone zone : zones) {
             zone.id = ++id;
             Territory territory = zone.createTerritory();
             File file = new File(territoryFolder, territory.getFileName());
             Json.save(file, territory, true);
+            territories.add(territory);
+        }
+        try {
+            TerritoryIndex.save(new File(territoryFolder, TerritoryIndex.FILE_NAME), territories);
+        } catch (IOException ioe) {
+            logger.log(Level.SEVERE, "[GeneratorWorld] [" + worldName + "] Saving territory index", ioe);
+        }
+    }
+
+    /**
+     * Plan the structure sites of all surface zones and save them
+     * next to the territories.  See SitePlanner.
+     */
+    public void planSites() {
+        SitePlanner sitePlanner = new SitePlanner(grid, maxLevel, new Random(worldName.hashCode()));
+        StructureSites sites = sitePlanner.plan(zones);
+        File file = getStructureSitesFile();
+        file.getParentFile().mkdirs();
+        try {
+            sites.save(file);
+        } catch (IOException ioe) {
+            logger.log(Level.SEVERE, "[GeneratorWorld] [" + worldName + "] Saving structure sites", ioe);
+        }
+        structureSites = sites;
+        structureSitesLoaded = true;
+        logger.info("[GeneratorWorld] [" + worldName + "] PlanSites sites:" + sites.size()
+                    + " regions:" + sites.getRegionCount());
+    }
+
+    public File getStructureSitesFile() {
+        return new File(new File(folder, TERRITORY_FOLDER), StructureSites.FILE_NAME);
+    }
+
+    /**
+     * Get the planned structure sites, loading them on first use.
+     * @return the sites, or null if none were planned
+     */
+    public StructureSites getStructureSites() {
+        if (!structureSitesLoaded) {
+            structureSitesLoaded = true;
+            File file = getStructureSitesFile();
+            if (file.isFile()) {
+                try {
+                    structureSites = StructureSites.load(file);
+                    logger.info("[GeneratorWorld] [" + worldName + "] Loaded structure sites: " + structureSites.size());
+                } catch (IOException ioe) {
+                    logger.log(Level.SEVERE, "[GeneratorWorld] [" + worldName + "] Loading structure sites", ioe);
+                }
+            }
+        }
+        return structureSites;
+    }
+
+    /**
+     * Run all remaining stages after loadBiomes in one go, with a
+     * checkpoint after each stage.  This may run on any thread, as
+     * long as nothing else touches this world in the meantime.
+     */
+    public void generateTerritories(int splitSize, int essentialSize, int mergeSize) {
+        if (generatorState <= 1) {
+            findZones();
+            advanceState(2);
+        }
+        if (generatorState == 2) {
+            while (mergeRiversStep()) saveCheckpointIfDue();
+            advanceState(3);
+        }
+        if (generatorState == 3) {
+            while (splitLargeZonesStep(splitSize)) saveCheckpointIfDue();
+            advanceState(4);
+        }
+        if (generatorState == 4) {
+            findEssentialBiomes(essentialSize);
+            advanceState(5);
+        }
+        if (generatorState == 5) {
+            while (mergeZonesStep(mergeSize)) saveCheckpointIfDue();
+            advanceState(6);
+        }
+        if (generatorState == 6) {
+            scaleZoneLevels();
+            advanceState(7);
+        }
+        if (generatorState == 7) {
+            saveZones();
+            advanceState(8);
+        }
+        if (generatorState == 8) {
+            planSites();
+            advanceState(9);
+        }
+    }
+
+    /**
+     * Enter the next state and save a checkpoint, or delete it once
+     * the territories and sites are saved.
+     */
+    public void advanceState(int state) {
+        generatorState = state;
+        if (generatorState >= 9) {
+            deleteCheckpoint();
+        } else {
+            saveCheckpoint();
+        }
+    }
+
+    public File getMapTilesFolder() {
+        return new File(new File(folder, TERRITORY_FOLDER), MAP_TILES_FOLDER);
+    }
+
+    public File getCheckpointFile() {
+        return new File(new File(folder, TERRITORY_FOLDER), GeneratorCheckpoint.FILE_NAME);
+    }
+
+    /**
+     * Resume from the last checkpoint, if any.
+     * @return true if a checkpoint was loaded, false otherwise
+     */
+    public boolean loadCheckpoint() {
+        File file = getCheckpointFile();
+        if (!file.isFile()) return false;
+        try {
+            GeneratorCheckpoint.load(this, file);
+        } catch (IOException ioe) {
+            logger.log(Level.SEVERE, "[GeneratorWorld] [" + worldName + "] Loading checkpoint", ioe);
+            return false;
+        }
+        lastCheckpoint = System.currentTimeMillis();
+        logger.info("[GeneratorWorld] [" + worldName + "] Resuming from checkpoint at state " + generatorState
+                    + " zones:" + (zones != null ? zones.size() : 0));
+        return true;
+    }
+
+    public void saveCheckpoint() {
+        final long time = System.currentTimeMillis();
+        File file = getCheckpointFile();
+        file.getParentFile().mkdirs();
+        try {
+            GeneratorCheckpoint.save(this, file);
+        } catch (IOException ioe) {
+            logger.log(Level.SEVERE, "[GeneratorWorld] [" + worldName + "] Saving checkpoint", ioe);
+            return;
+        }
+        lastCheckpoint = System.currentTimeMillis();
+        logger.info("[GeneratorWorld] [" + worldName + "] Checkpoint at state " + generatorState
+                    + " in " + (lastCheckpoint - time) + "ms");
+    }
+
+    /**
+     * Save a checkpoint during a long stage, if the checkpoint
+     * interval has passed.
+     */
+    public void saveCheckpointIfDue() {
+        if (checkpointInterval <= 0L) return;
+        if (System.currentTimeMillis() - lastCheckpoint < checkpointInterval) return;
+        saveCheckpoint();
+    }
+
+    public void deleteCheckpoint() {
+        getCheckpointFile().delete();
+    }
+
+    /**
+     * Render the finished zones with their levels.
+     */
+    public void saveMap(File file) throws IOException {
+        makeImage(0);
+        drawZones(true, true);
+        drawZones(false, false);
+        drawEssentialBiomes();
+        drawZoneLabels();
+        saveImage(file);
+    }
+
+    /**
+     * Export the finished zones as map tiles, colored like saveMap,
+     * with its labels and markers in tiles.json.  See MapTiles.
+     * @return the number of tiles written
+     */
+    public int saveMapTiles(File tileFolder) throws IOException {
+        MapTiles mapTiles = new MapTiles(grid, zoneColors(true), zoneColors(false));
+        for (Map.Entry<BiomeGroup, Vec2i> entry : essentialBiomes.entrySet()) {
+            BiomeGroup biome = entry.getKey();
+            Vec2i pos = entry.getValue();
+            mapTiles.addMarker(pos.x, pos.z, biome.name().toLowerCase().replace("_", " "), biome.color);
+        }
+        for (GeneratorZone zone : zones) {
+            Vec2i center = zone.getCenter();
+            mapTiles.addLabel(center.x, center.z, "" + zone.level, Color.WHITE);
         }
+        int count = mapTiles.export(tileFolder);
+        logger.info("[GeneratorWorld] [" + worldName + "] Saved " + count + " map tiles"
+                    + " zoom:0-" + mapTiles.getMaxZoom());
+        return count;
     }
 
     public void debug(PrintStream out) {
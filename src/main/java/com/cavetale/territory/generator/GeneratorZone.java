@@ -3,128 +3,247 @@ package com.cavetale.territory.generator;
 import com.cavetale.core.struct.Vec2i;
 import com.cavetale.territory.BiomeGroup;
 import com.cavetale.territory.struct.Territory;
-import com.cavetale.territory.util.Vectors;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
+import com.cavetale.territory.util.IntIntMap;
+import com.cavetale.territory.util.IntList;
+import java.util.Arrays;
 import lombok.Getter;
 
 /**
  * Zone abstraction for the Generator.
  * Zones are used to eventually generate Territories.
+ *
+ * Chunks are stored as indexes of the ChunkGrid, which also knows
+ * the owning zone of each chunk.
+ *
+ * Each zone also knows the length of the border it shares with each
+ * of its neighbors, in chunk edges.  This adjacency is kept up to
+ * date by addChunk, removeChunk and addAll.
  */
 @Getter
 public final class GeneratorZone {
+    protected final ChunkGrid grid;
+    protected final int gridId;
     protected final BiomeGroup biomeGroup;
-    protected final Set<Vec2i> chunks;
+    protected final IntList chunks = new IntList();
+    /**
+     * Neighbor grid id => shared border length.
+     */
+    protected final IntIntMap borders = new IntIntMap();
     protected Vec2i center;
     protected boolean essential = false; // deprecated?
     protected int level;
-    protected List<GeneratorZone> neighbors;
     protected int id;
+    protected boolean removed;
 
-    public GeneratorZone(final BiomeGroup biomeGroup, final Collection<Vec2i> chunks) {
+    protected GeneratorZone(final ChunkGrid grid, final int gridId, final BiomeGroup biomeGroup) {
+        this.grid = grid;
+        this.gridId = gridId;
         this.biomeGroup = biomeGroup;
-        this.chunks = new HashSet<>(chunks);
     }
 
     public Territory createTerritory() {
-        List<Integer> chunkList = new ArrayList<>();
-        for (Vec2i chunk : chunks) {
-            chunkList.add(chunk.x);
-            chunkList.add(chunk.z);
-        }
-        return new Territory(id, level, getCenter(), biomeGroup.humanName, biomeGroup, chunkList);
-    }
-
-    public boolean isBorder(Vec2i vec) {
-        return chunks.contains(vec)
-            && (!chunks.contains(vec.add(0, 1))
-                || !chunks.contains(vec.add(1, 0))
-                || !chunks.contains(vec.add(0, -1))
-                || !chunks.contains(vec.add(-1, 0)));
+        return new Territory(id, level, getCenter(), biomeGroup.humanName, biomeGroup, createSpans());
     }
 
-    public void putIn(Map<Vec2i, GeneratorZone> map) {
-        for (Vec2i vec : chunks) {
-            map.put(vec, this);
+    /**
+     * Encode the chunks as row spans for the Territory.  Grid indexes
+     * sort by z, then x.
+     */
+    private int[] createSpans() {
+        int[] sorted = chunks.toArray();
+        Arrays.sort(sorted);
+        IntList spans = new IntList();
+        for (int i = 0; i < sorted.length; i += 1) {
+            final int index = sorted[i];
+            if (i > 0 && index == sorted[i - 1] + 1 && grid.z(index) == grid.z(sorted[i - 1])) {
+                spans.set(spans.size() - 1, grid.x(index));
+            } else {
+                spans.add(grid.z(index));
+                spans.add(grid.x(index));
+                spans.add(grid.x(index));
+            }
         }
+        return spans.toArray();
     }
 
-    public void removeFrom(Map<Vec2i, GeneratorZone> map) {
-        for (Vec2i vec : chunks) {
-            map.remove(vec);
+    public boolean isBorder(int index) {
+        if (grid.zones[index] != gridId) return false;
+        for (int dir = 0; dir < 4; dir += 1) {
+            int nbor = grid.neighbor(index, dir);
+            if (nbor < 0 || grid.zones[nbor] != gridId) return true;
         }
+        return false;
     }
 
     public int size() {
         return chunks.size();
     }
 
-    public List<Vec2i> getBorderChunks() {
-        return chunks.stream()
-            .filter(this::isBorder)
-            .collect(Collectors.toList());
+    public IntList getBorderChunks() {
+        IntList result = new IntList();
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int index = chunks.get(i);
+            if (isBorder(index)) result.add(index);
+        }
+        return result;
     }
 
-    public void addChunk(Vec2i vec) {
+    /**
+     * Add a chunk which does not currently belong to any zone.
+     */
+    public void addChunk(int index) {
         center = null;
-        chunks.add(vec);
+        grid.zones[index] = gridId;
+        grid.slots[index] = chunks.size();
+        chunks.add(index);
+        updateBorders(index, 1);
     }
 
-    public boolean removeChunk(Vec2i vec) {
+    public boolean removeChunk(int index) {
+        if (grid.zones[index] != gridId) return false;
         center = null;
-        return chunks.remove(vec);
+        updateBorders(index, -1);
+        int slot = grid.slots[index];
+        chunks.swapRemove(slot);
+        if (slot < chunks.size()) {
+            grid.slots[chunks.get(slot)] = slot;
+        }
+        grid.zones[index] = ChunkGrid.NO_ZONE;
+        return true;
     }
 
+    /**
+     * Take over all chunks of another zone, leaving it empty.
+     */
     public void addAll(GeneratorZone other) {
         center = null;
-        chunks.addAll(other.chunks);
+        for (int slot = 0; slot < other.borders.capacity(); slot += 1) {
+            final int nborId = other.borders.keyAt(slot);
+            if (nborId == 0) continue;
+            final int length = other.borders.valueAt(slot);
+            if (nborId == gridId) {
+                borders.add(other.gridId, -length);
+                continue;
+            }
+            GeneratorZone nbor = grid.getZone(nborId);
+            nbor.borders.add(other.gridId, -length);
+            nbor.borders.add(gridId, length);
+            borders.add(nborId, length);
+        }
+        other.borders.clear();
+        chunks.ensureCapacity(chunks.size() + other.chunks.size());
+        for (int i = 0; i < other.chunks.size(); i += 1) {
+            int index = other.chunks.get(i);
+            grid.zones[index] = gridId;
+            grid.slots[index] = chunks.size();
+            chunks.add(index);
+        }
+        other.chunks.clear();
+        other.center = null;
     }
 
-    public void addAllChunks(Collection<Vec2i> cs) {
+    /**
+     * Release all chunks.
+     */
+    protected void clear() {
+        for (int slot = 0; slot < borders.capacity(); slot += 1) {
+            final int nborId = borders.keyAt(slot);
+            if (nborId == 0) continue;
+            grid.getZone(nborId).borders.add(gridId, -borders.valueAt(slot));
+        }
+        borders.clear();
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int index = chunks.get(i);
+            if (grid.zones[index] == gridId) grid.zones[index] = ChunkGrid.NO_ZONE;
+        }
+        chunks.clear();
         center = null;
-        chunks.addAll(cs);
     }
 
-    public boolean containsChunk(Vec2i vec) {
-        return chunks.contains(vec);
+    /**
+     * Count the edges between a chunk and its neighbors of other
+     * zones.  The chunk must be owned by this zone.
+     */
+    private void updateBorders(int index, int delta) {
+        for (int dir = 0; dir < 4; dir += 1) {
+            final int nbor = grid.neighbor(index, dir);
+            if (nbor < 0) continue;
+            final int nborId = grid.zones[nbor];
+            if (nborId == ChunkGrid.NO_ZONE || nborId == gridId) continue;
+            borders.add(nborId, delta);
+            grid.getZone(nborId).borders.add(gridId, delta);
+        }
+    }
+
+    public boolean isNeighbor(GeneratorZone other) {
+        return borders.containsKey(other.gridId);
+    }
+
+    /**
+     * The number of chunk edges shared with another zone.
+     */
+    public int getSharedBorder(GeneratorZone other) {
+        return borders.get(other.gridId);
+    }
+
+    /**
+     * Find the neighbor sharing the longest border with this zone.
+     * Ties go to the lower grid id.
+     * @return the neighbor or null if there is none
+     */
+    public GeneratorZone getLongestBorderNeighbor() {
+        int bestId = 0;
+        int bestLength = 0;
+        for (int slot = 0; slot < borders.capacity(); slot += 1) {
+            final int nborId = borders.keyAt(slot);
+            if (nborId == 0) continue;
+            final int length = borders.valueAt(slot);
+            if (length > bestLength || (length == bestLength && nborId < bestId)) {
+                bestId = nborId;
+                bestLength = length;
+            }
+        }
+        return bestId != 0 ? grid.getZone(bestId) : null;
+    }
+
+    public boolean containsChunk(int index) {
+        return grid.zones[index] == gridId;
     }
 
     public Vec2i computeCenter() {
         // Average of min and max
-        Vec2i sample = chunks.iterator().next();
-        int ax = sample.x;
-        int bx = sample.x;
-        int ay = sample.z;
-        int by = sample.z;
-        for (Vec2i chunk : chunks) {
-            if (chunk.x < ax) ax = chunk.x;
-            if (chunk.x > bx) bx = chunk.x;
-            if (chunk.z < ay) ay = chunk.z;
-            if (chunk.z > by) by = chunk.z;
+        int sample = chunks.get(0);
+        int ax = grid.x(sample);
+        int bx = ax;
+        int ay = grid.z(sample);
+        int by = ay;
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int index = chunks.get(i);
+            int x = grid.x(index);
+            int z = grid.z(index);
+            if (x < ax) ax = x;
+            if (x > bx) bx = x;
+            if (z < ay) ay = z;
+            if (z > by) by = z;
         }
         // Nearest of Median
-        center = Vectors.nearest(new Vec2i((ax + bx) / 2, (ay + by) / 2), chunks);
+        final int mx = (ax + bx) / 2;
+        final int mz = (ay + by) / 2;
+        int nearest = sample;
+        int dist = Integer.MAX_VALUE;
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int index = chunks.get(i);
+            int d = Math.abs(grid.x(index) - mx) + Math.abs(grid.z(index) - mz);
+            if (d < dist) {
+                nearest = index;
+                dist = d;
+            }
+        }
+        center = grid.vector(nearest);
         return center;
     }
 
     public Vec2i getCenter() {
         return center != null ? center : computeCenter();
     }
-
-    public void computeNeighbors(Map<Vec2i, GeneratorZone> zones) {
-        neighbors = new ArrayList<>();
-        for (Vec2i vec : getBorderChunks()) {
-            for (Vec2i nbor : Vectors.neighbors(vec)) {
-                GeneratorZone zone = zones.get(nbor);
-                if (zone == null || zone == this || neighbors.contains(zone)) continue;
-                neighbors.add(zone);
-            }
-        }
-    }
 }
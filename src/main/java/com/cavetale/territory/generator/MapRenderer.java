@@ -0,0 +1,85 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Draw a ChunkGrid straight into the ARGB pixel array of an image,
+ * one pixel per chunk, so that the pixel index equals the grid
+ * index.  The grid is cut into bands of rows, which are drawn in
+ * parallel.  Each pixel is only ever written by the band containing
+ * it.
+ */
+final class MapRenderer {
+    static final int BAND_ROWS = 64;
+    private static final BiomeGroup[] BIOME_GROUPS = BiomeGroup.values();
+    private final ChunkGrid grid;
+    private final int[] pixels;
+
+    MapRenderer(final ChunkGrid grid, final int[] pixels) {
+        if (pixels.length != grid.size()) {
+            throw new IllegalArgumentException("pixels=" + pixels.length + " grid=" + grid.size());
+        }
+        this.grid = grid;
+        this.pixels = pixels;
+    }
+
+    @FunctionalInterface
+    interface Band {
+        void draw(int fromIndex, int toIndex);
+    }
+
+    private void forEachBand(Band band) {
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        final int bands = (height + BAND_ROWS - 1) / BAND_ROWS;
+        IntStream.range(0, bands).parallel().forEach(i -> {
+                final int fromRow = i * BAND_ROWS;
+                final int toRow = Math.min(height, fromRow + BAND_ROWS);
+                band.draw(fromRow * width, toRow * width);
+            });
+    }
+
+    void fill(int argb) {
+        forEachBand((from, to) -> Arrays.fill(pixels, from, to, argb));
+    }
+
+    void drawBiomes() {
+        final int[] colors = new int[BIOME_GROUPS.length];
+        for (BiomeGroup biomeGroup : BIOME_GROUPS) {
+            colors[biomeGroup.ordinal()] = biomeGroup.color.getRGB();
+        }
+        final byte[] biomes = grid.biomes;
+        forEachBand((from, to) -> {
+                for (int index = from; index < to; index += 1) {
+                    if (biomes[index] != ChunkGrid.NO_BIOME) pixels[index] = colors[biomes[index]];
+                }
+            });
+    }
+
+    /**
+     * Draw zones in their precomputed colors.
+     * @param colors the ARGB color of each zone id, or 0 to skip
+     * @param fill true to draw whole zones, false to draw only
+     *   their borders
+     */
+    void drawZones(int[] colors, boolean fill) {
+        final int[] zones = grid.zones;
+        forEachBand((from, to) -> {
+                for (int index = from; index < to; index += 1) {
+                    final int zoneId = zones[index];
+                    if (zoneId == ChunkGrid.NO_ZONE || colors[zoneId] == 0) continue;
+                    if (fill || isBorder(index, zoneId)) pixels[index] = colors[zoneId];
+                }
+            });
+    }
+
+    private boolean isBorder(int index, int zoneId) {
+        for (int dir = 0; dir < 4; dir += 1) {
+            final int nbor = grid.neighbor(index, dir);
+            if (nbor < 0 || grid.zones[nbor] != zoneId) return true;
+        }
+        return false;
+    }
+}
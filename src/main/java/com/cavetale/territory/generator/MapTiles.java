@@ -0,0 +1,199 @@
+package com.cavetale.territory.generator;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import javax.imageio.ImageIO;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Export the zones of a ChunkGrid as a pyramid of map tiles, in
+ * z/x/y.png below a folder.  At the highest zoom level one pixel is
+ * one chunk, and each level below halves the resolution.  Tile 0/0
+ * starts at the top left corner of the grid, see tiles.json.
+ *
+ * Each tile samples the grid directly and is written right away, so
+ * the full map is never in memory.  Tiles are rendered in parallel.
+ * Tiles without any zone are not written, and any such tile left
+ * over from an earlier export is deleted.
+ *
+ * Text does not scale with the tiles, so zone labels and essential
+ * biome markers are not drawn.  They are listed in tiles.json, in
+ * chunk coordinates, for the viewer to draw on top.  The file is
+ * written by hand, so the command line export needs no JSON library.
+ */
+final class MapTiles {
+    static final int TILE_SIZE = 256;
+    static final String META_FILE_NAME = "tiles.json";
+    private final ChunkGrid grid;
+    private final int[] fillColors;
+    private final int[] borderColors;
+    private final int maxZoom;
+    private final List<Label> labels = new ArrayList<>();
+    private final List<Label> markers = new ArrayList<>();
+
+    @RequiredArgsConstructor
+    private static final class Label {
+        private final int x;
+        private final int z;
+        private final String text;
+        private final Color color;
+    }
+
+    /**
+     * @param fillColors the ARGB color of each zone id, or 0 to skip
+     * @param borderColors the ARGB border color of each zone id
+     */
+    MapTiles(final ChunkGrid grid, final int[] fillColors, final int[] borderColors) {
+        this.grid = grid;
+        this.fillColors = fillColors;
+        this.borderColors = borderColors;
+        int zoom = 0;
+        while ((TILE_SIZE << zoom) < Math.max(grid.getWidth(), grid.getHeight())) zoom += 1;
+        this.maxZoom = zoom;
+    }
+
+    int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Add a text label, like the zone levels of the full map.
+     */
+    void addLabel(int x, int z, String text, Color color) {
+        labels.add(new Label(x, z, text, color));
+    }
+
+    /**
+     * Add a named marker, like the essential biomes of the full map.
+     */
+    void addMarker(int x, int z, String text, Color color) {
+        markers.add(new Label(x, z, text, color));
+    }
+
+    /**
+     * @return the number of tiles written
+     */
+    int export(File folder) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        for (int zoom = 0; zoom <= maxZoom; zoom += 1) {
+            final int z = zoom;
+            final int scale = 1 << (maxZoom - zoom);
+            final int tileChunks = TILE_SIZE * scale;
+            final int tilesX = (grid.getWidth() + tileChunks - 1) / tileChunks;
+            final int tilesY = (grid.getHeight() + tileChunks - 1) / tileChunks;
+            try {
+                IntStream.range(0, tilesX * tilesY).parallel().forEach(i -> {
+                        final int tileX = i % tilesX;
+                        final int tileY = i / tilesX;
+                        File file = new File(folder, z + "/" + tileX + "/" + tileY + ".png");
+                        BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+                        int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                        if (!renderTile(tileX, tileY, scale, pixels)) {
+                            file.delete();
+                            return;
+                        }
+                        file.getParentFile().mkdirs();
+                        try {
+                            ImageIO.write(img, "png", file);
+                        } catch (IOException ioe) {
+                            throw new UncheckedIOException(ioe);
+                        }
+                        count.incrementAndGet();
+                    });
+            } catch (UncheckedIOException uioe) {
+                throw uioe.getCause();
+            }
+        }
+        folder.mkdirs();
+        Files.writeString(new File(folder, META_FILE_NAME).toPath(), toJson(), StandardCharsets.UTF_8);
+        return count.get();
+    }
+
+    String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n")
+            .append("  \"tileSize\": ").append(TILE_SIZE).append(",\n")
+            .append("  \"maxZoom\": ").append(maxZoom).append(",\n")
+            .append("  \"ax\": ").append(grid.getAx()).append(",\n")
+            .append("  \"az\": ").append(grid.getAz()).append(",\n")
+            .append("  \"width\": ").append(grid.getWidth()).append(",\n")
+            .append("  \"height\": ").append(grid.getHeight()).append(",\n");
+        appendLabels(sb, "labels", labels);
+        sb.append(",\n");
+        appendLabels(sb, "markers", markers);
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    private static void appendLabels(StringBuilder sb, String name, List<Label> list) {
+        sb.append("  \"").append(name).append("\": [");
+        for (int i = 0; i < list.size(); i += 1) {
+            Label label = list.get(i);
+            sb.append(i == 0 ? "\n" : ",\n")
+                .append("    {\"x\": ").append(label.x)
+                .append(", \"z\": ").append(label.z)
+                .append(", \"text\": ");
+            appendString(sb, label.text);
+            sb.append(", \"color\": \"").append(String.format("#%06x", label.color.getRGB() & 0xFFFFFF)).append("\"}");
+        }
+        sb.append(list.isEmpty() ? "]" : "\n  ]");
+    }
+
+    private static void appendString(StringBuilder sb, String str) {
+        sb.append('"');
+        for (int i = 0; i < str.length(); i += 1) {
+            final char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Sample one chunk per pixel.  A pixel is a border if the chunk
+     * one pixel over in any direction belongs to another zone.
+     * @return true if any pixel was drawn, false otherwise
+     */
+    boolean renderTile(int tileX, int tileY, int scale, int[] pixels) {
+        Arrays.fill(pixels, 0);
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        final int[] zones = grid.zones;
+        boolean result = false;
+        for (int py = 0; py < TILE_SIZE; py += 1) {
+            final int gz = (tileY * TILE_SIZE + py) * scale;
+            if (gz >= height) break;
+            for (int px = 0; px < TILE_SIZE; px += 1) {
+                final int gx = (tileX * TILE_SIZE + px) * scale;
+                if (gx >= width) break;
+                final int zoneId = zones[gx + gz * width];
+                if (zoneId == ChunkGrid.NO_ZONE || fillColors[zoneId] == 0) continue;
+                final boolean border = gx - scale < 0 || gx + scale >= width
+                    || gz - scale < 0 || gz + scale >= height
+                    || zones[(gx - scale) + gz * width] != zoneId
+                    || zones[(gx + scale) + gz * width] != zoneId
+                    || zones[gx + (gz - scale) * width] != zoneId
+                    || zones[gx + (gz + scale) * width] != zoneId;
+                pixels[px + py * TILE_SIZE] = border ? borderColors[zoneId] : fillColors[zoneId];
+                result = true;
+            }
+        }
+        return result;
+    }
+}
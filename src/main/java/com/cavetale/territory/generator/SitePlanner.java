@@ -0,0 +1,188 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import com.cavetale.territory.struct.StructureSites;
+import com.cavetale.territory.util.IntList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plan structure sites with Poisson disk sampling, so that they are
+ * spread evenly but not in a regular pattern.  Each zone is sampled
+ * on its own, with a minimum distance that depends on its level and
+ * biome group.  Sites also keep that distance from sites of
+ * neighboring zones.
+ *
+ * Samples grow outward from random points of the zone (Bridson).
+ * Parts the growth cannot reach are seeded again, with one attempt
+ * per background cell.  The background grid is fine enough that
+ * each cell holds at most one site, so a neighborhood check is a
+ * handful of array reads.
+ *
+ * This only reads the grid and zones and may run on any thread.
+ */
+final class SitePlanner {
+    /**
+     * Minimum distance in chunks at the highest level and the
+     * maximum at level 0.
+     */
+    static final double MIN_SPACING = 12.0;
+    static final double MAX_SPACING = 24.0;
+    /**
+     * Background cells must be no wider than MIN_SPACING / sqrt(2).
+     */
+    static final int CELL_SIZE = 8;
+    static final int ATTEMPTS = 30;
+    private final ChunkGrid grid;
+    private final int maxLevel;
+    private final Random random;
+    private final int cellsX;
+    private final int cellsZ;
+    private final int[] cells;
+    private final IntList active = new IntList();
+    private final StructureSites sites = new StructureSites();
+
+    SitePlanner(final ChunkGrid grid, final int maxLevel, final Random random) {
+        this.grid = grid;
+        this.maxLevel = maxLevel;
+        this.random = random;
+        this.cellsX = (grid.getWidth() + CELL_SIZE - 1) / CELL_SIZE;
+        this.cellsZ = (grid.getHeight() + CELL_SIZE - 1) / CELL_SIZE;
+        this.cells = new int[cellsX * cellsZ];
+        Arrays.fill(cells, -1);
+    }
+
+    /**
+     * Sparser in some biomes, where the surface is mostly water or
+     * steep.
+     */
+    static double biomeFactor(BiomeGroup biomeGroup) {
+        switch (biomeGroup) {
+        case OCEAN: return 2.0;
+        case MOUNTAIN:
+        case BEACH:
+            return 1.5;
+        case SWAMP:
+        case JUNGLE:
+        case BAMBOO:
+        case DARK_FOREST:
+            return 1.25;
+        default: return 1.0;
+        }
+    }
+
+    /**
+     * The minimum distance between sites of a zone, in chunks.
+     */
+    double spacing(GeneratorZone zone) {
+        final double levelFactor = maxLevel > 0
+            ? Math.min(1.0, (double) zone.level / (double) maxLevel)
+            : 0.0;
+        return (MAX_SPACING - (MAX_SPACING - MIN_SPACING) * levelFactor) * biomeFactor(zone.biomeGroup);
+    }
+
+    StructureSites plan(List<GeneratorZone> zones) {
+        for (GeneratorZone zone : zones) {
+            if (zone.removed || zone.biomeGroup.category != BiomeGroup.Category.SURFACE) continue;
+            planZone(zone);
+        }
+        return sites;
+    }
+
+    /**
+     * @return the number of sites
+     */
+    int planZone(GeneratorZone zone) {
+        final double spacing = spacing(zone);
+        final int[] order = zone.chunks.toArray();
+        for (int i = order.length - 1; i > 0; i -= 1) {
+            final int j = random.nextInt(i + 1);
+            final int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        final int stamp = -2 - zone.gridId;
+        int result = 0;
+        for (int seed : order) {
+            // One seed attempt per cell
+            final int cell = cellOf(seed);
+            if (cells[cell] != -1) continue;
+            cells[cell] = stamp;
+            if (!isFree(seed, spacing)) continue;
+            add(seed);
+            result += 1;
+            result += grow(zone, spacing);
+        }
+        // Forget seed attempts
+        for (int seed : order) {
+            final int cell = cellOf(seed);
+            if (cells[cell] == stamp) cells[cell] = -1;
+        }
+        return result;
+    }
+
+    /**
+     * Grow from the active samples until none is left.
+     */
+    private int grow(GeneratorZone zone, double spacing) {
+        int result = 0;
+        while (!active.isEmpty()) {
+            final int i = random.nextInt(active.size());
+            final int index = active.get(i);
+            final int x = index % grid.getWidth();
+            final int z = index / grid.getWidth();
+            boolean found = false;
+            for (int attempt = 0; attempt < ATTEMPTS; attempt += 1) {
+                final double angle = random.nextDouble() * Math.PI * 2.0;
+                final double distance = spacing * (1.0 + random.nextDouble());
+                final int nx = x + (int) Math.round(Math.cos(angle) * distance);
+                final int nz = z + (int) Math.round(Math.sin(angle) * distance);
+                if (nx < 0 || nz < 0 || nx >= grid.getWidth() || nz >= grid.getHeight()) continue;
+                final int nindex = nx + nz * grid.getWidth();
+                if (grid.zones[nindex] != zone.gridId || !isFree(nindex, spacing)) continue;
+                add(nindex);
+                result += 1;
+                found = true;
+                break;
+            }
+            if (!found) active.swapRemove(i);
+        }
+        return result;
+    }
+
+    private int cellOf(int index) {
+        final int x = index % grid.getWidth();
+        final int z = index / grid.getWidth();
+        return (x / CELL_SIZE) + (z / CELL_SIZE) * cellsX;
+    }
+
+    private void add(int index) {
+        cells[cellOf(index)] = index;
+        active.add(index);
+        sites.add(grid.x(index), grid.z(index));
+    }
+
+    /**
+     * Check that no site is closer than the spacing.  Cells hold
+     * either a site index, or a negative value for none.
+     */
+    private boolean isFree(int index, double spacing) {
+        final int x = index % grid.getWidth();
+        final int z = index / grid.getWidth();
+        final double spacing2 = spacing * spacing;
+        final int range = (int) Math.ceil(spacing / CELL_SIZE);
+        final int cx = x / CELL_SIZE;
+        final int cz = z / CELL_SIZE;
+        for (int dz = Math.max(0, cz - range); dz <= Math.min(cellsZ - 1, cz + range); dz += 1) {
+            for (int dx = Math.max(0, cx - range); dx <= Math.min(cellsX - 1, cx + range); dx += 1) {
+                final int other = cells[dx + dz * cellsX];
+                if (other < 0) continue;
+                final int ox = other % grid.getWidth() - x;
+                final int oz = other / grid.getWidth() - z;
+                if ((double) (ox * ox + oz * oz) < spacing2) return false;
+            }
+        }
+        return true;
+    }
+}
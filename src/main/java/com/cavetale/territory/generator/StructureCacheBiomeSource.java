@@ -0,0 +1,40 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.core.struct.Vec2i;
+import com.cavetale.territory.BiomeGroup;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import static com.cavetale.structure.StructurePlugin.structureCache;
+
+/**
+ * Read biomes from the structure cache of a running server.
+ */
+@RequiredArgsConstructor
+public final class StructureCacheBiomeSource implements BiomeSource {
+    private final World world;
+
+    @Override
+    public ChunkGrid createGrid() {
+        Map<Vec2i, Biome> biomes = structureCache().allBiomes(world);
+        // Determine world dimensions.  Should we use the WorldBorder
+        // instead?
+        int ax = 0;
+        int bx = 0;
+        int az = 0;
+        int bz = 0;
+        for (Vec2i vec : biomes.keySet()) {
+            if (vec.x < ax) ax = vec.x;
+            if (vec.x > bx) bx = vec.x;
+            if (vec.z < az) az = vec.z;
+            if (vec.z > bz) bz = vec.z;
+        }
+        ChunkGrid grid = new ChunkGrid(ax, az, bx - ax + 1, bz - az + 1);
+        for (Map.Entry<Vec2i, Biome> entry : biomes.entrySet()) {
+            Vec2i vec = entry.getKey();
+            grid.setBiomeGroup(vec.x, vec.z, BiomeGroup.Biomes.of(entry.getValue()));
+        }
+        return grid;
+    }
+}
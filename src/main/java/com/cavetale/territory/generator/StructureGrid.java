@@ -0,0 +1,93 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.core.struct.Cuboid;
+import com.cavetale.territory.util.LongObjectMap;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial hash of the bounding boxes of placed structures in one
+ * world.  The world is cut into square cells, and each box is listed
+ * in every cell it overlaps.  A query only visits the cells its own
+ * box overlaps, so the cost does not grow with the number of
+ * structures in the world.
+ *
+ * Cells are filled by the CellLoader the first time they are
+ * queried, so the cost of loading is spread over the chunks which
+ * need it.
+ */
+final class StructureGrid {
+    static final int CELL_BITS = 7; // 128 blocks
+    private final CellLoader loader;
+    private final LongObjectMap<List<Cuboid>> cells = new LongObjectMap<>();
+    private int loadedCells;
+
+    /**
+     * Find the boxes which already exist in one cell.
+     */
+    @FunctionalInterface
+    interface CellLoader {
+        /**
+         * @return all boxes overlapping the columns from ax, az to
+         * bx, bz, inclusive
+         */
+        List<Cuboid> load(int ax, int az, int bx, int bz);
+    }
+
+    StructureGrid(final CellLoader loader) {
+        this.loader = loader;
+    }
+
+    StructureGrid() {
+        this((ax, az, bx, bz) -> List.of());
+    }
+
+    private List<Cuboid> getCell(int cx, int cz) {
+        final long key = LongObjectMap.key(cx, cz);
+        List<Cuboid> list = cells.get(key);
+        if (list == null) {
+            list = new ArrayList<>(loader.load(cx << CELL_BITS, cz << CELL_BITS,
+                                               ((cx + 1) << CELL_BITS) - 1, ((cz + 1) << CELL_BITS) - 1));
+            cells.put(key, list);
+            loadedCells += 1;
+        }
+        return list;
+    }
+
+    /**
+     * Add a box to the cells which are already loaded.  The others
+     * will find it via the loader, so it must be stored where the
+     * loader looks.
+     */
+    void add(Cuboid box) {
+        for (int cz = box.az >> CELL_BITS; cz <= box.bz >> CELL_BITS; cz += 1) {
+            for (int cx = box.ax >> CELL_BITS; cx <= box.bx >> CELL_BITS; cx += 1) {
+                List<Cuboid> list = cells.get(LongObjectMap.key(cx, cz));
+                if (list != null) list.add(box);
+            }
+        }
+    }
+
+    /**
+     * Check if any box overlaps the given one.  Bounds are
+     * inclusive.
+     */
+    boolean intersects(Cuboid box) {
+        for (int cz = box.az >> CELL_BITS; cz <= box.bz >> CELL_BITS; cz += 1) {
+            for (int cx = box.ax >> CELL_BITS; cx <= box.bx >> CELL_BITS; cx += 1) {
+                for (Cuboid it : getCell(cx, cz)) {
+                    if (it.ax <= box.bx && it.bx >= box.ax
+                        && it.ay <= box.by && it.by >= box.ay
+                        && it.az <= box.bz && it.bz >= box.az) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    int getLoadedCells() {
+        return loadedCells;
+    }
+}
@@ -0,0 +1,106 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Read biomes straight from the structures.db of a world folder, so
+ * the generator can run without a server.  The SQLite JDBC driver
+ * must be on the class path.  Paper ships one.
+ *
+ * The database is expected to hold one row per chunk in the biomes
+ * table, as written by the Structure plugin:
+ * chunk_x, chunk_z, biome
+ * This is checked before reading, so a different layout fails with
+ * a clear message instead of an SQL error.
+ *
+ * The first query only finds the bounds of the grid.  The second
+ * walks all rows with a forward only cursor and writes them straight
+ * into the grid, so no row is kept in memory.
+ */
+@RequiredArgsConstructor
+public final class StructuresDbBiomeSource implements BiomeSource {
+    public static final String FILE_NAME = "structures.db";
+    private static final int FETCH_SIZE = 4096;
+    private static final List<String> COLUMNS = List.of("chunk_x", "chunk_z", "biome");
+    private final File file;
+
+    @Override
+    public ChunkGrid createGrid() {
+        if (!file.isFile()) {
+            throw new IllegalStateException("File not found: " + file);
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+            checkSchema(connection);
+            ChunkGrid grid = createEmptyGrid(connection);
+            fillGrid(connection, grid);
+            return grid;
+        } catch (SQLException sqle) {
+            throw new IllegalStateException("Reading " + file, sqle);
+        }
+    }
+
+    private void checkSchema(Connection connection) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet row = statement.executeQuery("PRAGMA table_info(biomes)")) {
+            while (row.next()) {
+                columns.add(row.getString("name").toLowerCase());
+            }
+        }
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("No biomes table in " + file
+                                            + ", expected biomes(" + String.join(", ", COLUMNS) + ")");
+        }
+        List<String> missing = new ArrayList<>();
+        for (String column : COLUMNS) {
+            if (!columns.contains(column)) missing.add(column);
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Biomes table in " + file + " lacks columns " + missing
+                                            + ", found " + columns);
+        }
+    }
+
+    private static ChunkGrid createEmptyGrid(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet row = statement.executeQuery("SELECT MIN(chunk_x), MAX(chunk_x), MIN(chunk_z), MAX(chunk_z)"
+                                                    + " FROM biomes")) {
+            // Aggregates of an empty table are null, which reads as 0
+            row.next();
+            final int ax = Math.min(0, row.getInt(1));
+            final int bx = Math.max(0, row.getInt(2));
+            final int az = Math.min(0, row.getInt(3));
+            final int bz = Math.max(0, row.getInt(4));
+            return new ChunkGrid(ax, az, bx - ax + 1, bz - az + 1);
+        }
+    }
+
+    private static void fillGrid(Connection connection, ChunkGrid grid) throws SQLException {
+        Map<String, BiomeGroup> biomeGroups = new HashMap<>();
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                                                              ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet row = statement.executeQuery("SELECT chunk_x, chunk_z, biome FROM biomes")) {
+                while (row.next()) {
+                    final String biome = row.getString(3);
+                    if (biome == null) continue;
+                    BiomeGroup biomeGroup = biomeGroups.computeIfAbsent(biome, BiomeSource::biomeGroupOf);
+                    grid.setBiomeGroup(row.getInt(1), row.getInt(2), biomeGroup);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.cavetale.territory.generator;
+
+import lombok.Getter;
+
+/**
+ * Decide how long a time sliced generator stage may run each tick.
+ *
+ * The server reports its average tick time, which includes our own
+ * slices.  We keep a moving average of those and subtract it to find
+ * what the rest of the server needs.  Whatever is left under the
+ * target MSPT is our budget, capped at the maximum budget.  At least
+ * the minimum number of steps runs each tick regardless, so a busy
+ * server still makes progress.
+ *
+ * Also counts the steps, time and ticks of the current stage.
+ */
+public final class TickBudget {
+    /**
+     * Weight of the latest slice in the moving average.
+     */
+    static final double SMOOTHING = 0.1;
+    private final long maxBudgetNanos;
+    private final long targetTickNanos;
+    @Getter private final int minSteps;
+    private double averageSliceNanos;
+    // Stage statistics
+    private long stageNanos;
+    private long stageSteps;
+    private int stageTicks;
+
+    public TickBudget(final double maxBudgetMillis, final double targetMspt, final int minSteps) {
+        this.maxBudgetNanos = (long) (maxBudgetMillis * 1_000_000.0);
+        this.targetTickNanos = (long) (targetMspt * 1_000_000.0);
+        this.minSteps = Math.max(1, minSteps);
+    }
+
+    /**
+     * Compute the budget for this tick.
+     * @param averageTickMillis the average tick time of the server
+     * @return the budget in nanoseconds, possibly 0
+     */
+    public long getBudget(double averageTickMillis) {
+        final long otherNanos = (long) (averageTickMillis * 1_000_000.0 - averageSliceNanos);
+        final long budget = targetTickNanos - Math.max(0L, otherNanos);
+        return Math.max(0L, Math.min(maxBudgetNanos, budget));
+    }
+
+    /**
+     * Record one slice.
+     */
+    public void record(long nanos, int steps) {
+        averageSliceNanos += (nanos - averageSliceNanos) * SMOOTHING;
+        stageNanos += nanos;
+        stageSteps += steps;
+        stageTicks += 1;
+    }
+
+    /**
+     * Summarize the throughput of the stage so far and start a new
+     * one.
+     */
+    public String finishStage() {
+        final double seconds = (double) stageNanos / 1_000_000_000.0;
+        final String result = "steps:" + stageSteps
+            + " ticks:" + stageTicks
+            + " time:" + String.format("%.2fs", seconds)
+            + " perTick:" + String.format("%.2fms", stageTicks > 0 ? seconds * 1000.0 / stageTicks : 0.0)
+            + " stepsPerTick:" + String.format("%.1f", stageTicks > 0 ? (double) stageSteps / stageTicks : 0.0)
+            + " stepsPerSecond:" + String.format("%.1f", seconds > 0 ? (double) stageSteps / seconds : 0.0);
+        stageNanos = 0L;
+        stageSteps = 0L;
+        stageTicks = 0;
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package com.cavetale.territory.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Connected component labelling of a ChunkGrid by BiomeGroup.
+ *
+ * The grid is cut into square tiles which are labelled in parallel
+ * with a two pass union find: first each tile unites its chunks with
+ * their left and upper neighbors, then the labels are merged along
+ * the tile seams, and finally every chunk is resolved to its root.
+ * The root of each component is always its smallest index, so the
+ * result does not depend on scheduling.
+ *
+ * Zones are then created in row major order of their first chunk,
+ * which may be spread over several calls.
+ */
+final class ZoneLabeler {
+    static final int DEFAULT_TILE_SIZE = 256;
+    private final ChunkGrid grid;
+    private final ForkJoinPool pool;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesZ;
+    private int[] parent;
+    private int[] labels;
+
+    ZoneLabeler(final ChunkGrid grid, final ForkJoinPool pool, final int tileSize) {
+        this.grid = grid;
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.tilesX = (grid.getWidth() + tileSize - 1) / tileSize;
+        this.tilesZ = (grid.getHeight() + tileSize - 1) / tileSize;
+    }
+
+    ZoneLabeler(final ChunkGrid grid) {
+        this(grid, ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    boolean isLabeled() {
+        return labels != null;
+    }
+
+    /**
+     * Label all chunks.  This blocks until all tiles are done.
+     */
+    void label() {
+        parent = new int[grid.size()];
+        List<Callable<Void>> tasks = new ArrayList<>(tilesX * tilesZ);
+        for (int tz = 0; tz < tilesZ; tz += 1) {
+            for (int tx = 0; tx < tilesX; tx += 1) {
+                final int tileX = tx;
+                final int tileZ = tz;
+                tasks.add(() -> {
+                        labelTile(tileX, tileZ);
+                        return null;
+                    });
+            }
+        }
+        runAll(tasks);
+        mergeSeams();
+        labels = new int[grid.size()];
+        tasks.clear();
+        for (int tz = 0; tz < tilesZ; tz += 1) {
+            for (int tx = 0; tx < tilesX; tx += 1) {
+                final int tileX = tx;
+                final int tileZ = tz;
+                tasks.add(() -> {
+                        resolveTile(tileX, tileZ);
+                        return null;
+                    });
+            }
+        }
+        runAll(tasks);
+        parent = null;
+    }
+
+    private void runAll(List<Callable<Void>> tasks) {
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ie);
+            } catch (ExecutionException ee) {
+                throw new IllegalStateException(ee.getCause());
+            }
+        }
+    }
+
+    /**
+     * First pass.  Only ever touches parents within the tile.
+     */
+    private void labelTile(int tileX, int tileZ) {
+        final byte[] biomes = grid.biomes;
+        final int width = grid.getWidth();
+        final int ax = tileX * tileSize;
+        final int az = tileZ * tileSize;
+        final int bx = Math.min(grid.getWidth(), ax + tileSize);
+        final int bz = Math.min(grid.getHeight(), az + tileSize);
+        for (int z = az; z < bz; z += 1) {
+            for (int x = ax; x < bx; x += 1) {
+                final int index = x + z * width;
+                parent[index] = index;
+                final byte biome = biomes[index];
+                if (biome == ChunkGrid.NO_BIOME) continue;
+                if (x > ax && biomes[index - 1] == biome) union(index, index - 1);
+                if (z > az && biomes[index - width] == biome) union(index, index - width);
+            }
+        }
+    }
+
+    /**
+     * Unite components along the tile borders.  This is serial and
+     * only costs the length of all seams.
+     */
+    private void mergeSeams() {
+        final byte[] biomes = grid.biomes;
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+        for (int x = tileSize; x < width; x += tileSize) {
+            for (int z = 0; z < height; z += 1) {
+                final int index = x + z * width;
+                final byte biome = biomes[index];
+                if (biome != ChunkGrid.NO_BIOME && biomes[index - 1] == biome) union(index, index - 1);
+            }
+        }
+        for (int z = tileSize; z < height; z += tileSize) {
+            for (int x = 0; x < width; x += 1) {
+                final int index = x + z * width;
+                final byte biome = biomes[index];
+                if (biome != ChunkGrid.NO_BIOME && biomes[index - width] == biome) union(index, index - width);
+            }
+        }
+    }
+
+    /**
+     * Second pass.  Finds the root without compressing paths
+     * because parents of other tiles are read concurrently.
+     */
+    private void resolveTile(int tileX, int tileZ) {
+        final int width = grid.getWidth();
+        final int ax = tileX * tileSize;
+        final int az = tileZ * tileSize;
+        final int bx = Math.min(grid.getWidth(), ax + tileSize);
+        final int bz = Math.min(grid.getHeight(), az + tileSize);
+        for (int z = az; z < bz; z += 1) {
+            for (int x = ax; x < bx; x += 1) {
+                int index = x + z * width;
+                int root = index;
+                while (parent[root] != root) root = parent[root];
+                labels[index] = root;
+            }
+        }
+    }
+
+    private int find(int index) {
+        int root = index;
+        while (parent[root] != root) root = parent[root];
+        while (parent[index] != root) {
+            int next = parent[index];
+            parent[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    /**
+     * Unite two components.  The smaller root always wins.
+     */
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) return;
+        if (ra < rb) {
+            parent[rb] = ra;
+        } else {
+            parent[ra] = rb;
+        }
+    }
+
+    /**
+     * Create the zones for all chunks within the given rows.  Rows
+     * must be processed in order because each zone is created once
+     * its first chunk is reached.
+     */
+    void createZones(int fromRow, int toRow, List<GeneratorZone> zones) {
+        final int width = grid.getWidth();
+        final int end = toRow * width;
+        for (int index = fromRow * width; index < end; index += 1) {
+            if (grid.biomes[index] == ChunkGrid.NO_BIOME) continue;
+            final int root = labels[index];
+            GeneratorZone zone;
+            if (root == index) {
+                zone = grid.createZone(grid.getBiomeGroup(index));
+                zones.add(zone);
+            } else {
+                zone = grid.getZoneAt(root);
+            }
+            zone.addChunk(index);
+        }
+    }
+}
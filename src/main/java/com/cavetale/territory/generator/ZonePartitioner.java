@@ -0,0 +1,133 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.util.IntList;
+
+/**
+ * Cut the chunks of a zone into balanced parts by recursive
+ * coordinate bisection.  Each cut goes across the longer side of the
+ * bounding box of the chunks at hand, at the chunk count which gives
+ * both halves their share of parts.  Selection instead of sorting
+ * keeps every level linear, so the whole partition costs
+ * O(n log k) for k parts.
+ *
+ * Parts are not guaranteed to be contiguous if the zone is not
+ * convex.  Callers should split them into their connected components
+ * afterwards.
+ *
+ * This only reads the chunk array it is given and may run on any
+ * thread.
+ */
+final class ZonePartitioner {
+    private final int gridWidth;
+    private final int[] chunks;
+    private final IntList ends = new IntList();
+
+    /**
+     * @param gridWidth the width of the ChunkGrid, to compute
+     *   coordinates from indexes
+     * @param chunks the chunk indexes, which will be reordered
+     */
+    ZonePartitioner(final int gridWidth, final int[] chunks) {
+        this.gridWidth = gridWidth;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Reorder the chunks so that each part is one consecutive
+     * range.
+     * @param preferredSize the preferred part size
+     * @return the exclusive end of each range, ascending
+     */
+    IntList partition(int preferredSize) {
+        ends.clear();
+        final int parts = Math.max(1, chunks.length / preferredSize);
+        bisect(0, chunks.length, parts);
+        return ends;
+    }
+
+    int[] getChunks() {
+        return chunks;
+    }
+
+    private void bisect(int from, int to, int parts) {
+        if (parts <= 1) {
+            ends.add(to);
+            return;
+        }
+        int ax = Integer.MAX_VALUE;
+        int bx = Integer.MIN_VALUE;
+        int az = Integer.MAX_VALUE;
+        int bz = Integer.MIN_VALUE;
+        for (int i = from; i < to; i += 1) {
+            final int x = chunks[i] % gridWidth;
+            final int z = chunks[i] / gridWidth;
+            if (x < ax) ax = x;
+            if (x > bx) bx = x;
+            if (z < az) az = z;
+            if (z > bz) bz = z;
+        }
+        final boolean alongX = bx - ax >= bz - az;
+        final int leftParts = parts / 2;
+        final int mid = from + (int) ((long) (to - from) * leftParts / parts);
+        select(from, to, mid, alongX);
+        bisect(from, mid, leftParts);
+        bisect(mid, to, parts - leftParts);
+    }
+
+    /**
+     * The sort key along an axis.  The other coordinate breaks ties
+     * so the result is fully deterministic.
+     */
+    private long key(int index, boolean alongX) {
+        final long x = index % gridWidth;
+        final long z = index / gridWidth;
+        return alongX
+            ? (x << 32) | z
+            : (z << 32) | x;
+    }
+
+    /**
+     * Quickselect: afterwards, no chunk in [from, nth) has a greater
+     * key than any chunk in [nth, to).
+     */
+    private void select(int from, int to, int nth, boolean alongX) {
+        int lo = from;
+        int hi = to - 1;
+        while (hi > lo) {
+            final int midPos = (lo + hi) >>> 1;
+            final long pivot = medianOfThree(key(chunks[lo], alongX),
+                                             key(chunks[midPos], alongX),
+                                             key(chunks[hi], alongX));
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (key(chunks[i], alongX) < pivot) i += 1;
+                while (key(chunks[j], alongX) > pivot) j -= 1;
+                if (i <= j) {
+                    final int tmp = chunks[i];
+                    chunks[i] = chunks[j];
+                    chunks[j] = tmp;
+                    i += 1;
+                    j -= 1;
+                }
+            }
+            if (nth <= j) {
+                hi = j;
+            } else if (nth >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static long medianOfThree(long a, long b, long c) {
+        if (a < b) {
+            if (b < c) return b;
+            return a < c ? c : a;
+        } else {
+            if (a < c) return a;
+            return b < c ? c : b;
+        }
+    }
+}
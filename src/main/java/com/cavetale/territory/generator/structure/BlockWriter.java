@@ -0,0 +1,140 @@
+package com.cavetale.territory.generator.structure;
+
+import com.cavetale.territory.util.LongObjectMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import lombok.Getter;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * Collect the block changes of a structure placement and apply them
+ * later, one chunk at a time.  Within a chunk, changes are applied
+ * section by section, bottom up, and in the order they were made
+ * within each section.  The caller decides how many chunks to apply
+ * per tick.
+ */
+public final class BlockWriter {
+    @Getter private final World world;
+    private final LongObjectMap<Batch> batchMap = new LongObjectMap<>();
+    private final ArrayDeque<Batch> queue = new ArrayDeque<>();
+    @Getter private int queuedBlocks;
+    /**
+     * Sort keys of the batch being applied, reused between batches.
+     */
+    private long[] order = new long[256];
+
+    public BlockWriter(final World world) {
+        this.world = world;
+    }
+
+    /**
+     * Changes within one chunk.  Positions are packed as y << 8 | z
+     * << 4 | x, with y relative to the world minimum.  A null block
+     * data means: clear the block unless it is already empty.
+     */
+    private static final class Batch {
+        private final int chunkX;
+        private final int chunkZ;
+        private int size;
+        private boolean applied;
+        private int[] positions = new int[256];
+        private BlockData[] blockDatas = new BlockData[256];
+
+        Batch(final int chunkX, final int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        void add(int position, BlockData blockData) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                blockDatas = Arrays.copyOf(blockDatas, size * 2);
+            }
+            positions[size] = position;
+            blockDatas[size] = blockData;
+            size += 1;
+        }
+    }
+
+    private void add(int x, int y, int z, BlockData blockData) {
+        if (y < world.getMinHeight() || y >= world.getMaxHeight()) return;
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
+        final long key = LongObjectMap.key(chunkX, chunkZ);
+        Batch batch = batchMap.get(key);
+        if (batch == null || batch.applied) {
+            batch = new Batch(chunkX, chunkZ);
+            batchMap.put(key, batch);
+            queue.add(batch);
+        }
+        batch.add(((y - world.getMinHeight()) << 8) | ((z & 15) << 4) | (x & 15), blockData);
+        queuedBlocks += 1;
+    }
+
+    public void setBlockData(int x, int y, int z, BlockData blockData) {
+        add(x, y, z, blockData);
+    }
+
+    /**
+     * Set a block to air unless it is already empty.  The block is
+     * only read once the change is applied.
+     */
+    public void clear(int x, int y, int z) {
+        add(x, y, z, null);
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Apply all changes of the next chunk.
+     * @return the number of blocks written
+     */
+    public int applyChunk() {
+        Batch batch = queue.poll();
+        if (batch == null) return 0;
+        batch.applied = true;
+        queuedBlocks -= batch.size;
+        // Sort by section, then insertion order: section << 32 | index
+        final int[] positions = batch.positions;
+        if (order.length < batch.size) order = new long[batch.positions.length];
+        for (int i = 0; i < batch.size; i += 1) {
+            order[i] = ((long) (positions[i] >> 12) << 32) | i;
+        }
+        Arrays.sort(order, 0, batch.size);
+        final Chunk chunk = world.getChunkAt(batch.chunkX, batch.chunkZ);
+        final int minY = world.getMinHeight();
+        int result = 0;
+        for (int j = 0; j < batch.size; j += 1) {
+            final int i = (int) order[j];
+            final int position = positions[i];
+            Block block = chunk.getBlock(position & 15, (position >> 8) + minY, (position >> 4) & 15);
+            BlockData blockData = batch.blockDatas[i];
+            if (blockData == null) {
+                if (block.isEmpty()) continue;
+                block.setType(Material.AIR, false);
+            } else {
+                block.setBlockData(blockData, false);
+            }
+            result += 1;
+        }
+        return result;
+    }
+
+    /**
+     * Apply everything now.
+     * @return the number of blocks written
+     */
+    public int applyAll() {
+        int result = 0;
+        while (!queue.isEmpty()) {
+            result += applyChunk();
+        }
+        return result;
+    }
+}
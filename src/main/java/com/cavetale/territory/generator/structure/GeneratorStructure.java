@@ -4,11 +4,15 @@ import com.cavetale.core.struct.Cuboid;
 import com.cavetale.core.struct.Vec2i;
 import com.cavetale.core.struct.Vec3i;
 import com.cavetale.structure.cache.Structure;
+import com.cavetale.territory.TerritoryStructureType;
 import java.util.List;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 
 public interface GeneratorStructure {
+    TerritoryStructureType getType();
+
     World getOriginWorld();
 
     boolean isValid();
@@ -21,24 +25,46 @@ public interface GeneratorStructure {
 
     List<Cuboid> getMarkers(String markerName);
 
+    GroundType getGroundType();
+
     /**
      * Create the world bounding box required to place this structure
      * in a world.
      * @param the anchor which will correspond with this anchor
      * @return the bounding box
      */
-    default Cuboid createTargetBoundingBox(Block base) {
+    default Cuboid createTargetBoundingBox(Vec3i base) {
         Cuboid boundingBox = getBoundingBox();
         Vec3i anchor = getAnchor();
         Vec3i min = boundingBox.getMin();
-        return boundingBox.shift((base.getX() - min.x) - (anchor.x - min.x),
-                                 (base.getY() - min.y) - (anchor.y - min.y),
-                                 (base.getZ() - min.z) - (anchor.z - min.z));
+        return boundingBox.shift((base.x - min.x) - (anchor.x - min.x),
+                                 (base.y - min.y) - (anchor.y - min.y),
+                                 (base.z - min.z) - (anchor.z - min.z));
+    }
+
+    default Cuboid createTargetBoundingBox(Block base) {
+        return createTargetBoundingBox(Vec3i.of(base));
+    }
+
+    boolean canPlace(Material anchorMaterial);
+
+    default boolean canPlace(Block anchorBlock) {
+        return canPlace(anchorBlock.getType());
     }
 
-    boolean canPlace(Block anchorBlock);
+    /**
+     * Check the target blocks in a snapshot of the world.
+     */
+    PlacementResult canPlace(SurfaceProbe probe, Cuboid targetBoundingBox);
 
-    PlacementResult canPlace(World targetWorld, Cuboid targetBoundingBox);
+    default PlacementResult canPlace(World targetWorld, Cuboid targetBoundingBox) {
+        return canPlace(new SurfaceProbe(targetWorld), targetBoundingBox);
+    }
 
-    Structure place(World targetWorld, Cuboid worldBoundingBox, Vec2i chunkVector);
+    /**
+     * Queue the blocks of this structure in the writer.  Target
+     * blocks are read from the probe which confirmed canPlace, not
+     * from the live world.
+     */
+    Structure place(BlockWriter writer, SurfaceProbe probe, Cuboid worldBoundingBox, Vec2i chunkVector);
 }
@@ -2,7 +2,6 @@ package com.cavetale.territory.generator.structure;
 
 import com.cavetale.area.struct.Area;
 import com.cavetale.area.struct.AreasFile;
-import com.cavetale.core.struct.Cuboid;
 import com.cavetale.territory.TerritoryStructureCategory;
 import com.cavetale.territory.TerritoryStructureType;
 import java.util.ArrayList;
@@ -10,17 +9,19 @@ import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
-import org.bukkit.Chunk;
+import java.util.Random;
 import org.bukkit.World;
 import static com.cavetale.territory.TerritoryPlugin.territoryPlugin;
 
 /**
  * All structures will be provided via one world, marked via the Area
- * plugin.
+ * plugin.  Their blocks are compiled into templates on load, sharing
+ * one palette, so the world need not stay loaded afterwards.
  */
 public final class GeneratorStructureCache {
     private final Map<TerritoryStructureType, List<GeneratorStructure>> cache = new EnumMap<>(TerritoryStructureType.class);
+    private final StructureTemplate.Palette palette = new StructureTemplate.Palette();
+    private final Map<TerritoryStructureCategory, StructureCatalog> catalogs = new EnumMap<>(TerritoryStructureCategory.class);
 
     public void load(World world) {
         for (TerritoryStructureType type : TerritoryStructureType.values()) {
@@ -28,23 +29,22 @@ public final class GeneratorStructureCache {
         }
     }
 
-    public void prepare() {
+    /**
+     * Check that every type has structures and build the catalogs.
+     * Shuffling and catalog ties use the given random, so selection
+     * can be reproduced from its seed.
+     */
+    public void prepare(Random random) {
         for (TerritoryStructureType type : TerritoryStructureType.values()) {
             if (cache.get(type) == null || cache.get(type).isEmpty()) {
                 throw new IllegalStateException(type + " cache is emtpy");
             }
-            territoryPlugin().getLogger().info(cache.get(type).size() + " " + type + " structures loaded");
-            for (GeneratorStructure structure : cache.get(type)) {
-                Cuboid cuboid = structure.getBoundingBox().blockToChunk();
-                for (int z = cuboid.az; z <= cuboid.bz; z += 1) {
-                    for (int x = cuboid.ax; x <= cuboid.bx; x += 1) {
-                        structure.getOriginWorld().getChunkAtAsync(x, z, (Consumer<Chunk>) chunk -> {
-                                chunk.addPluginChunkTicket(territoryPlugin());
-                            });
-                    }
-                }
-            }
-            Collections.shuffle(cache.get(type));
+            territoryPlugin().getLogger().info(cache.get(type).size() + " " + type + " structures loaded"
+                                               + ", palette:" + palette.size());
+            Collections.shuffle(cache.get(type), random);
+        }
+        for (TerritoryStructureCategory category : TerritoryStructureCategory.values()) {
+            catalogs.put(category, new StructureCatalog(getStructures(category), random));
         }
     }
 
@@ -61,7 +61,7 @@ public final class GeneratorStructureCache {
             return;
         }
         for (Map.Entry<String, List<Area>> entry : areasFile.areas.entrySet()) {
-            GeneratorStructure generatorStructure = type.createGeneratorStructure(world, entry.getKey(), entry.getValue());
+            GeneratorStructure generatorStructure = type.createGeneratorStructure(world, entry.getKey(), entry.getValue(), palette);
             if (!generatorStructure.isValid()) {
                 territoryPlugin().getLogger().severe("[GeneratorStructureCache] [" + type + "] not valid: " + generatorStructure);
                 continue;
@@ -85,6 +85,10 @@ public final class GeneratorStructureCache {
         return result;
     }
 
+    public StructureCatalog getCatalog(TerritoryStructureCategory category) {
+        return catalogs.get(category);
+    }
+
     public GeneratorStructure getStructure(TerritoryStructureType type, String name) {
         List<GeneratorStructure> list = getStructures(type);
         for (GeneratorStructure it : list) {
@@ -17,20 +17,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import lombok.Getter;
-import org.bukkit.HeightMap;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.Tag;
 import org.bukkit.World;
-import org.bukkit.block.Block;
-import org.bukkit.block.data.BlockData;
 import static com.cavetale.territory.TerritoryPlugin.territoryPlugin;
 
 /**
  * A pre-made structure to be placed on the surface.
  *
  * Blocks are stored in the originWorld.  Areas are marked via the
- * Area plugin.
+ * Area plugin.  The blocks are copied into a template once, so
+ * checks and placement never touch the originWorld.
  *
  * Nomenclature: orignXYZ => targetXYZ
  * Members: origin
@@ -47,15 +45,18 @@ public final class GeneratorSurfaceStructure implements GeneratorStructure {
     private final Set<Vec3i> mobVectors = new HashSet<>();
     private final Set<Vec3i> flyingMobVectors = new HashSet<>();
     private final Vec3i bossChestVector;
+    private final StructureTemplate template;
 
     public GeneratorSurfaceStructure(final TerritoryStructureType type,
-                                     final World world, final String name, final List<Area> areas) {
+                                     final World world, final String name, final List<Area> areas,
+                                     final StructureTemplate.Palette palette) {
         this.type = type;
         this.originWorld = world;
         this.name = name;
         Vec3i theAnchor = null;
         Vec3i theBossChestVector = null;
         this.boundingBox = areas.get(0).toCuboid();
+        this.template = StructureTemplate.compile(world, boundingBox, palette);
         for (Area area : areas.subList(1, areas.size())) {
             if (area.name == null) {
                 continue;
@@ -88,15 +89,18 @@ public final class GeneratorSurfaceStructure implements GeneratorStructure {
         if (theAnchor != null) {
             this.anchor = theAnchor;
         } else {
-            Block block = world.getBlockAt((boundingBox.ax + boundingBox.bx) / 2,
-                                           boundingBox.ay,
-                                           (boundingBox.az + boundingBox.bz) / 2);
-            while (block.isEmpty() && block.getY() < boundingBox.by) {
-                block = block.getRelative(0, 1, 0);
+            final int x = (boundingBox.ax + boundingBox.bx) / 2 - boundingBox.ax;
+            final int z = (boundingBox.az + boundingBox.bz) / 2 - boundingBox.az;
+            int y = 0;
+            while (template.isAir(x, y, z) && y < boundingBox.getSizeY() - 1) {
+                y += 1;
             }
-            this.anchor = Vec3i.of(block);
+            this.anchor = boundingBox.getMin().add(x, y, z);
         }
-        this.groundType = GroundType.of(anchor.toBlock(world));
+        final Vec3i a = anchor.subtract(boundingBox.getMin());
+        this.groundType = template.contains(a.x, a.y, a.z)
+            ? GroundType.of(template.getType(a.x, a.y, a.z))
+            : GroundType.of(anchor.toBlock(world));
         this.bossChestVector = theBossChestVector != null
             ? theBossChestVector
             : anchor.add(0, 1, 0);
@@ -140,21 +144,19 @@ public final class GeneratorSurfaceStructure implements GeneratorStructure {
     /**
      * Check if a block is above ground.
      */
-    private boolean isSurfaceAirReplaceable(Block block) {
-        Material mat = block.getType();
+    private static boolean isSurfaceAirReplaceable(Material mat) {
         return mat.isAir()
             || SURFACE_AIR_REPLACEABLES.isTagged(mat)
-            || block.getCollisionShape().getBoundingBoxes().isEmpty();
+            || !mat.isSolid();
     }
 
-    private boolean isSurfaceGroundReplaceable(Block block) {
-        Material mat = block.getType();
+    private static boolean isSurfaceGroundReplaceable(Material mat) {
         return SURFACE_GROUND_REPLACEABLES.isTagged(mat);
     }
 
     @Override
-    public boolean canPlace(Block anchorBlock) {
-        return groundType.matches(anchorBlock);
+    public boolean canPlace(Material anchorMaterial) {
+        return groundType.matches(anchorMaterial);
     }
 
     /**
@@ -170,25 +172,28 @@ public final class GeneratorSurfaceStructure implements GeneratorStructure {
      * part of the ground, while air blocks are above.  Other ground
      * structures like trees must also be considered for replacement.
      *
+     * All target blocks are read from the probe, never from the live
+     * world.
+     *
      * This function will check if the location is valid and return
      * false otherwise.  Specifically, all "air" markers (Area
      * cuboids) must be an considered air, and "ground" markers must
      * be considered ground.
      */
     @Override
-    public PlacementResult canPlace(World targetWorld, Cuboid targetBoundingBox) {
+    public PlacementResult canPlace(SurfaceProbe probe, Cuboid targetBoundingBox) {
         Vec3i targetOffset = targetBoundingBox.getMin();
         Vec3i originOffset = this.boundingBox.getMin();
         for (Cuboid airMarker : getMarkers("air")) {
             for (Vec3i targetPos : airMarker.shift(originOffset.negate()).shift(targetOffset).enumerate()) {
-                if (!isSurfaceAirReplaceable(targetPos.toBlock(targetWorld))) {
+                if (!isSurfaceAirReplaceable(probe.getType(targetPos))) {
                     return PlacementResult.Type.AIR.make(targetPos);
                 }
             }
         }
         for (Cuboid airMarker : getMarkers("ground")) {
             for (Vec3i targetPos : airMarker.shift(originOffset.negate()).shift(targetOffset).enumerate()) {
-                if (!isSurfaceGroundReplaceable(targetPos.toBlock(targetWorld))) {
+                if (!isSurfaceGroundReplaceable(probe.getType(targetPos))) {
                     return PlacementResult.Type.GROUND.make(targetPos);
                 }
             }
@@ -196,16 +201,11 @@ public final class GeneratorSurfaceStructure implements GeneratorStructure {
         // None of the floor blocks may hover in midair!
         for (int z = 0; z < boundingBox.getSizeZ(); z += 1) {
             for (int x = 0; x < boundingBox.getSizeX(); x += 1) {
-                Y: for (int y = 0; y < boundingBox.getSizeY(); y += 1) {
-                    Vec3i originPos = originOffset.add(x, y, z);
-                    BlockData originBlockData = originPos.toBlock(originWorld).getBlockData();
-                    if (originPos.toBlock(originWorld).isEmpty()) continue Y;
-                    Vec3i targetPos = targetOffset.add(x, y, z);
-                    if (!isSurfaceGroundReplaceable(targetPos.toBlock(targetWorld))) {
-                        return PlacementResult.Type.AUTO.make(targetPos);
-                    } else {
-                        break Y; // Match found!
-                    }
+                final int y = template.getFloorY(x, z);
+                if (y == StructureTemplate.NO_FLOOR) continue;
+                Vec3i targetPos = targetOffset.add(x, y, z);
+                if (!isSurfaceGroundReplaceable(probe.getType(targetPos))) {
+                    return PlacementResult.Type.AUTO.make(targetPos);
                 }
             }
         }
@@ -213,30 +213,29 @@ public final class GeneratorSurfaceStructure implements GeneratorStructure {
     }
 
     /**
-     * Place the structure and never fail.
+     * Place the structure and never fail.  The blocks are queued in
+     * the writer, which the caller applies.  The pillar above each
+     * column is cleared up to the ceiling found by the probe.
      */
     @Override
-    public Structure place(World targetWorld, Cuboid targetBoundingBox, Vec2i chunkVector) {
+    public Structure place(BlockWriter writer, SurfaceProbe probe, Cuboid targetBoundingBox, Vec2i chunkVector) {
+        final World targetWorld = writer.getWorld();
         Vec3i targetOffset = targetBoundingBox.getMin();
         Vec3i originOffset = this.boundingBox.getMin();
+        final int topY = targetOffset.y + boundingBox.getSizeY();
         for (int z = 0; z < boundingBox.getSizeZ(); z += 1) {
             for (int x = 0; x < boundingBox.getSizeX(); x += 1) {
-                boolean pillarStarted = false;
-                for (int y = 0; y < boundingBox.getSizeY(); y += 1) {
-                    Vec3i originPos = originOffset.add(x, y, z);
-                    Vec3i targetPos = targetOffset.add(x, y, z);
-                    BlockData blockData = originPos.toBlock(originWorld).getBlockData();
-                    if (!pillarStarted && blockData.getMaterial().isAir()) continue;
-                    if (!pillarStarted) {
-                        pillarStarted = true;
-                        // Clear the pillar
-                        final int ceilY = targetWorld.getHighestBlockYAt(targetPos.x, targetPos.z, HeightMap.WORLD_SURFACE);
-                        for (int targetY = targetPos.y; targetY < ceilY; targetY += 1) {
-                            Block aboveBlock = targetWorld.getBlockAt(targetPos.x, targetY, targetPos.z);
-                            if (!aboveBlock.isEmpty()) aboveBlock.setType(Material.AIR, false);
-                        }
-                    }
-                    targetPos.toBlock(targetWorld).setBlockData(blockData, false);
+                final int floorY = template.getFloorY(x, z);
+                if (floorY == StructureTemplate.NO_FLOOR) continue;
+                final int targetX = targetOffset.x + x;
+                final int targetZ = targetOffset.z + z;
+                for (int y = floorY; y < boundingBox.getSizeY(); y += 1) {
+                    writer.setBlockData(targetX, targetOffset.y + y, targetZ, template.getBlockData(x, y, z));
+                }
+                // Clear the rest of the pillar
+                final int ceilY = probe.getCeilingY(targetX, targetZ);
+                for (int targetY = topY; targetY < ceilY; targetY += 1) {
+                    writer.clear(targetX, targetY, targetZ);
                 }
             }
         }
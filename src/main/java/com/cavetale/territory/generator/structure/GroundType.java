@@ -9,7 +9,7 @@ import org.bukkit.block.Block;
  */
 public enum GroundType {
     ANY {
-        @Override public boolean matches(Block block) {
+        @Override public boolean matches(Material material) {
             return true;
         }
     },
@@ -27,16 +27,24 @@ public enum GroundType {
         this.tag = tag;
     }
 
-    public static GroundType of(Block anchorBlock) {
+    public static GroundType of(Material anchorMaterial) {
         for (GroundType it : values()) {
-            if (it.tag != null && it.tag.isTagged(anchorBlock.getType())) {
+            if (it.tag != null && it.tag.isTagged(anchorMaterial)) {
                 return it;
             }
         }
         return ANY;
     }
 
-    public boolean matches(Block groundBlock) {
-        return tag.isTagged(groundBlock.getType());
+    public static GroundType of(Block anchorBlock) {
+        return of(anchorBlock.getType());
+    }
+
+    public boolean matches(Material material) {
+        return tag.isTagged(material);
+    }
+
+    public final boolean matches(Block groundBlock) {
+        return matches(groundBlock.getType());
     }
 }
@@ -0,0 +1,119 @@
+package com.cavetale.territory.generator.structure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Structures of one category, indexed by their ground type.  Each
+ * ground type keeps its structures ordered by how often they were
+ * placed, least first, with ties in random order.  Placing a
+ * structure moves it back in line, so all of them get their turn.
+ */
+public final class StructureCatalog {
+    private final Random random;
+    private final Map<GroundType, TreeSet<Entry>> groundMap = new EnumMap<>(GroundType.class);
+    private final Map<GeneratorStructure, Entry> entryMap = new IdentityHashMap<>();
+
+    private static final class Entry {
+        private final GeneratorStructure structure;
+        private final int serial;
+        private int count;
+        private int tiebreaker;
+
+        Entry(final GeneratorStructure structure, final int serial) {
+            this.structure = structure;
+            this.serial = serial;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+        .<Entry>comparingInt(e -> e.count)
+        .thenComparingInt(e -> e.tiebreaker)
+        .thenComparingInt(e -> e.serial);
+
+    public StructureCatalog(final List<GeneratorStructure> structures, final Random random) {
+        this.random = random;
+        for (GeneratorStructure structure : structures) {
+            Entry entry = new Entry(structure, entryMap.size());
+            entry.tiebreaker = random.nextInt();
+            entryMap.put(structure, entry);
+            groundMap.computeIfAbsent(structure.getGroundType(), g -> new TreeSet<>(ORDER)).add(entry);
+        }
+    }
+
+    /**
+     * Get the structures which may stand on any of the given ground
+     * types, least placed first.  Structures of GroundType.ANY are
+     * always included.
+     */
+    public List<GeneratorStructure> select(Set<GroundType> groundTypes) {
+        List<Iterator<Entry>> iterators = new ArrayList<>();
+        for (Map.Entry<GroundType, TreeSet<Entry>> it : groundMap.entrySet()) {
+            if (it.getKey() == GroundType.ANY || groundTypes.contains(it.getKey())) {
+                iterators.add(it.getValue().iterator());
+            }
+        }
+        // Merge the sorted sets
+        List<GeneratorStructure> result = new ArrayList<>();
+        List<Entry> heads = new ArrayList<>(iterators.size());
+        for (Iterator<Entry> iter : iterators) {
+            heads.add(iter.hasNext() ? iter.next() : null);
+        }
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < heads.size(); i += 1) {
+                Entry head = heads.get(i);
+                if (head == null) continue;
+                if (best < 0 || ORDER.compare(head, heads.get(best)) < 0) best = i;
+            }
+            if (best < 0) break;
+            result.add(heads.get(best).structure);
+            Iterator<Entry> iter = iterators.get(best);
+            heads.set(best, iter.hasNext() ? iter.next() : null);
+        }
+        return result;
+    }
+
+    /**
+     * Count a placement and move the structure behind all others
+     * with fewer placements.
+     */
+    public void recordPlacement(GeneratorStructure structure) {
+        Entry entry = entryMap.get(structure);
+        if (entry == null) return;
+        TreeSet<Entry> set = groundMap.get(structure.getGroundType());
+        set.remove(entry);
+        entry.count += 1;
+        entry.tiebreaker = random.nextInt();
+        set.add(entry);
+    }
+
+    public int getCount(GeneratorStructure structure) {
+        Entry entry = entryMap.get(structure);
+        return entry != null ? entry.count : 0;
+    }
+
+    /**
+     * Placement counts by structure name, for logging.
+     */
+    public Map<String, Integer> getCounts() {
+        Map<String, Integer> result = new TreeMap<>();
+        for (Entry entry : entryMap.values()) {
+            result.put(entry.structure.getName(), entry.count);
+        }
+        return result;
+    }
+
+    public int size() {
+        return entryMap.size();
+    }
+}
@@ -0,0 +1,166 @@
+package com.cavetale.territory.generator.structure;
+
+import com.cavetale.core.struct.Cuboid;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * The blocks of a structure, copied out of the origin world once.
+ * Each block is an index into a Palette, which is shared by all
+ * templates of one cache, so identical block states are stored only
+ * once.
+ *
+ * Blocks are stored column by column, so that walking up one column
+ * reads consecutive entries.  Coordinates are relative to the
+ * minimum corner of the bounding box.
+ */
+@Getter
+public final class StructureTemplate {
+    private final Palette palette;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final short[] blocks;
+    /**
+     * The lowest non-air y of each column, or NO_FLOOR.
+     */
+    private final int[] floors;
+    public static final int NO_FLOOR = -1;
+
+    private StructureTemplate(final Palette palette, final int sizeX, final int sizeY, final int sizeZ) {
+        this.palette = palette;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.blocks = new short[sizeX * sizeY * sizeZ];
+        this.floors = new int[sizeX * sizeZ];
+    }
+
+    /**
+     * Copy the blocks within a bounding box.  Each chunk is read
+     * from one snapshot.
+     */
+    public static StructureTemplate compile(World world, Cuboid boundingBox, Palette palette) {
+        StructureTemplate result = new StructureTemplate(palette,
+                                                         boundingBox.getSizeX(),
+                                                         boundingBox.getSizeY(),
+                                                         boundingBox.getSizeZ());
+        final int minY = world.getMinHeight();
+        final int maxY = world.getMaxHeight();
+        final short air = palette.indexOf(Material.AIR.createBlockData());
+        for (int chunkZ = boundingBox.az >> 4; chunkZ <= boundingBox.bz >> 4; chunkZ += 1) {
+            for (int chunkX = boundingBox.ax >> 4; chunkX <= boundingBox.bx >> 4; chunkX += 1) {
+                ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                final int az = Math.max(boundingBox.az, chunkZ << 4);
+                final int bz = Math.min(boundingBox.bz, (chunkZ << 4) + 15);
+                final int ax = Math.max(boundingBox.ax, chunkX << 4);
+                final int bx = Math.min(boundingBox.bx, (chunkX << 4) + 15);
+                for (int z = az; z <= bz; z += 1) {
+                    for (int x = ax; x <= bx; x += 1) {
+                        int index = result.index(x - boundingBox.ax, 0, z - boundingBox.az);
+                        for (int y = boundingBox.ay; y <= boundingBox.by; y += 1) {
+                            result.blocks[index] = y >= minY && y < maxY
+                                ? palette.indexOf(snapshot.getBlockData(x & 15, y, z & 15))
+                                : air;
+                            index += 1;
+                        }
+                    }
+                }
+            }
+        }
+        result.computeFloors();
+        return result;
+    }
+
+    private void computeFloors() {
+        for (int column = 0; column < floors.length; column += 1) {
+            final int base = column * sizeY;
+            int floor = NO_FLOOR;
+            for (int y = 0; y < sizeY; y += 1) {
+                if (!palette.isAir(blocks[base + y])) {
+                    floor = y;
+                    break;
+                }
+            }
+            floors[column] = floor;
+        }
+    }
+
+    /**
+     * @return the lowest non-air y of a column, or NO_FLOOR
+     */
+    public int getFloorY(int x, int z) {
+        return floors[z * sizeX + x];
+    }
+
+    public int index(int x, int y, int z) {
+        return (z * sizeX + x) * sizeY + y;
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= 0 && x < sizeX
+            && y >= 0 && y < sizeY
+            && z >= 0 && z < sizeZ;
+    }
+
+    public BlockData getBlockData(int x, int y, int z) {
+        return palette.get(blocks[index(x, y, z)]);
+    }
+
+    public Material getType(int x, int y, int z) {
+        return palette.getType(blocks[index(x, y, z)]);
+    }
+
+    public boolean isAir(int x, int y, int z) {
+        return palette.isAir(blocks[index(x, y, z)]);
+    }
+
+    /**
+     * Block states by index.  Lookups are not thread safe while
+     * templates are being compiled.
+     */
+    public static final class Palette {
+        private final List<BlockData> blockDataList = new ArrayList<>();
+        private final List<Material> materialList = new ArrayList<>();
+        private final Map<BlockData, Short> indexMap = new HashMap<>();
+
+        public short indexOf(BlockData blockData) {
+            Short index = indexMap.get(blockData);
+            if (index != null) return index;
+            if (blockDataList.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Palette is full: " + blockDataList.size());
+            }
+            final short result = (short) blockDataList.size();
+            blockDataList.add(blockData);
+            materialList.add(blockData.getMaterial());
+            indexMap.put(blockData, result);
+            return result;
+        }
+
+        /**
+         * The returned block data is shared and must not be modified.
+         */
+        public BlockData get(short index) {
+            return blockDataList.get(index);
+        }
+
+        public Material getType(short index) {
+            return materialList.get(index);
+        }
+
+        public boolean isAir(short index) {
+            return materialList.get(index).isAir();
+        }
+
+        public int size() {
+            return blockDataList.size();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.cavetale.territory.generator.structure;
+
+import com.cavetale.core.struct.Vec3i;
+import com.cavetale.territory.util.LongObjectMap;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Waterlogged;
+
+/**
+ * Read only view of the blocks around a chunk while structures are
+ * placed.  Each chunk is snapshot once with its heightmap, the first
+ * time any of its blocks are requested, so a bounding box reaching
+ * into neighboring chunks snapshots those as well.  All further
+ * lookups stay off the live world.
+ *
+ * A probe must not outlive the placement of one structure, because
+ * it will not see blocks changed in the world.
+ */
+public final class SurfaceProbe {
+    private final World world;
+    private final int minY;
+    private final int maxY;
+    private final LongObjectMap<ChunkSnapshot> snapshots = new LongObjectMap<>(16);
+
+    public SurfaceProbe(final World world) {
+        this.world = world;
+        this.minY = world.getMinHeight();
+        this.maxY = world.getMaxHeight();
+    }
+
+    private ChunkSnapshot getSnapshot(int x, int z) {
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
+        final long key = LongObjectMap.key(chunkX, chunkZ);
+        ChunkSnapshot result = snapshots.get(key);
+        if (result == null) {
+            result = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(true, false, false);
+            snapshots.put(key, result);
+        }
+        return result;
+    }
+
+    public BlockData getBlockData(int x, int y, int z) {
+        if (y < minY || y >= maxY) return Material.AIR.createBlockData();
+        return getSnapshot(x, z).getBlockData(x & 15, y, z & 15);
+    }
+
+    public BlockData getBlockData(Vec3i vec) {
+        return getBlockData(vec.x, vec.y, vec.z);
+    }
+
+    public Material getType(int x, int y, int z) {
+        if (y < minY || y >= maxY) return Material.AIR;
+        return getSnapshot(x, z).getBlockType(x & 15, y, z & 15);
+    }
+
+    public Material getType(Vec3i vec) {
+        return getType(vec.x, vec.y, vec.z);
+    }
+
+    /**
+     * Find the highest block like the MOTION_BLOCKING_NO_LEAVES
+     * heightmap.  Snapshots only carry MOTION_BLOCKING, which is
+     * never lower, so we start there and skip down over leaves.
+     * @return the y coordinate, or one below the world if there is
+     *   no such block
+     */
+    public int getSurfaceY(int x, int z) {
+        ChunkSnapshot snapshot = getSnapshot(x, z);
+        final int lx = x & 15;
+        final int lz = z & 15;
+        int y = Math.min(maxY - 1, snapshot.getHighestBlockYAt(lx, lz));
+        while (y >= minY && !isMotionBlockingNoLeaves(snapshot.getBlockData(lx, y, lz))) {
+            y -= 1;
+        }
+        return y;
+    }
+
+    /**
+     * Find the highest non-air block like the WORLD_SURFACE
+     * heightmap, which snapshots do not carry.  Start at
+     * MOTION_BLOCKING and climb over anything stacked on top, such
+     * as flowers or snow.  Blocks floating above a gap of air are
+     * missed.
+     * @return the y coordinate, or one below the world if there is
+     *   no such block
+     */
+    public int getCeilingY(int x, int z) {
+        ChunkSnapshot snapshot = getSnapshot(x, z);
+        final int lx = x & 15;
+        final int lz = z & 15;
+        int y = Math.min(maxY - 1, snapshot.getHighestBlockYAt(lx, lz));
+        while (y >= minY && snapshot.getBlockType(lx, y, lz).isAir()) {
+            y -= 1;
+        }
+        while (y + 1 < maxY && !snapshot.getBlockType(lx, y + 1, lz).isAir()) {
+            y += 1;
+        }
+        return y;
+    }
+
+    private static boolean isMotionBlockingNoLeaves(BlockData blockData) {
+        Material mat = blockData.getMaterial();
+        if (Tag.LEAVES.isTagged(mat)) return false;
+        if (mat.isSolid()) return true;
+        switch (mat) {
+        case WATER:
+        case LAVA:
+        case BUBBLE_COLUMN:
+        case SEAGRASS:
+        case TALL_SEAGRASS:
+        case KELP:
+        case KELP_PLANT:
+            return true;
+        default:
+            return blockData instanceof Waterlogged waterlogged && waterlogged.isWaterlogged();
+        }
+    }
+}
@@ -4,12 +4,16 @@ import com.cavetale.core.struct.Vec2i;
 import com.cavetale.core.util.Json;
 import com.cavetale.territory.BiomeGroup;
 import com.cavetale.territory.struct.Territory;
+import com.cavetale.territory.struct.TerritoryIndex;
+import com.cavetale.territory.util.LongObjectMap;
 import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.Bukkit;
@@ -17,49 +21,95 @@ import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import static com.cavetale.territory.TerritoryPlugin.territoryPlugin;
 
 /**
  * World runtime for the Manager.  The generator also utilizes this in
  * its later stages.
  *
  * This loads the territories from their files and preprocesses them
- * for quick lookup.
+ * for quick lookup.  If the generator left a fresh TerritoryIndex, it
+ * is mapped into memory instead.
+ *
+ * Lookups are meant to be called from frequent events and never
+ * allocate.  Regions are found in a table keyed by region x and z,
+ * and each thread remembers the last region it visited.
  */
 @RequiredArgsConstructor
 public final class TerritoryWorld {
     public static final String TERRITORY_FOLDER = "territory";
     public final String worldName;
     @Getter private final List<Territory> territories = new ArrayList<>();
-    private final Map<Vec2i, int[]> regionMap = new HashMap<>();
-    private final Territory nullTerritory = new Territory(0, 0, Vec2i.ZERO, "Nowhere", BiomeGroup.VOID, List.of());
+    private volatile LongObjectMap<IntBuffer> regionTable = new LongObjectMap<>();
+    private final ThreadLocal<RegionCache> regionCache = ThreadLocal.withInitial(RegionCache::new);
+    private final Territory nullTerritory = new Territory(0, 0, Vec2i.ZERO, "Nowhere", BiomeGroup.VOID, new int[0]);
 
     public void load() {
         World world = Bukkit.getWorld(worldName);
         if (world == null) return;
         File folder = new File(world.getWorldFolder(), TERRITORY_FOLDER);
+        List<File> files = new ArrayList<>();
         if (folder.isDirectory()) {
             for (File file : folder.listFiles()) {
                 String name = file.getName();
                 if (!name.startsWith("territory.") || !name.endsWith(".json")) continue;
-                Territory territory = Json.load(file, Territory.class);
-                if (territory == null) {
-                    throw new IllegalStateException("File yields null: " + file);
+                files.add(file);
+            }
+        }
+        File indexFile = new File(folder, TerritoryIndex.FILE_NAME);
+        if (TerritoryIndex.isFresh(indexFile, files)) {
+            try {
+                TerritoryIndex index = TerritoryIndex.load(indexFile);
+                territories.addAll(index.getTerritories());
+                LongObjectMap<IntBuffer> table = new LongObjectMap<>(index.getRegions().size());
+                for (Map.Entry<Vec2i, IntBuffer> entry : index.getRegions().entrySet()) {
+                    table.put(LongObjectMap.key(entry.getKey().x, entry.getKey().z), entry.getValue());
                 }
-                territories.add(territory);
+                regionTable = table;
+                return;
+            } catch (IOException ioe) {
+                territoryPlugin().getLogger().log(Level.WARNING, "[" + worldName + "] Corrupt territory index, loading JSON instead: "
+                                                  + indexFile, ioe);
+                territories.clear();
             }
         }
+        loadJson(files);
+    }
+
+    private void loadJson(List<File> files) {
+        List<Territory> list = new ArrayList<>(files.size());
+        for (File file : files) {
+            Territory territory = Json.load(file, Territory.class);
+            if (territory == null) {
+                throw new IllegalStateException("File yields null: " + file);
+            }
+            list.add(territory);
+        }
+        load(list);
+    }
+
+    /**
+     * Build the lookup tables from territories which are already in
+     * memory.
+     */
+    public void load(List<Territory> list) {
+        territories.clear();
+        territories.addAll(list);
         territories.sort(Comparator.comparingInt(Territory::getId));
+        LongObjectMap<IntBuffer> table = new LongObjectMap<>();
         for (int tindex = 0; tindex < territories.size(); tindex += 1) {
-            Territory territory = territories.get(tindex);
-            for (int i = 0; i < territory.getChunkCount(); i += 1) {
-                final Vec2i chunkVec = territory.getChunk(i);
-                final Vec2i regionVec = new Vec2i(chunkVec.x >> 5, chunkVec.z >> 5);
-                int chunkX = chunkVec.x & 31;
-                int chunkZ = chunkVec.z & 31;
-                regionMap.computeIfAbsent(regionVec, v -> new int[32 * 32])
-                    [chunkX + chunkZ * 32] = tindex + 1;
-            }
+            final int value = tindex + 1;
+            territories.get(tindex).forEachChunk((x, z) -> {
+                    final long key = LongObjectMap.key(x >> 5, z >> 5);
+                    IntBuffer region = table.get(key);
+                    if (region == null) {
+                        region = IntBuffer.allocate(TerritoryIndex.REGION_SIZE);
+                        table.put(key, region);
+                    }
+                    region.put((x & 31) + (z & 31) * 32, value);
+                });
         }
+        regionTable = table;
     }
 
     public Territory at(Block block) {
@@ -75,13 +125,63 @@ public final class TerritoryWorld {
     }
 
     public Territory getTerritoryAtChunk(int x, int y) {
-        int[] region = regionMap.get(new Vec2i(x >> 5, y >> 5));
-        if (region == null) return nullTerritory;
-        int chunkX = x & 31;
-        int chunkZ = y & 31;
-        int tindex = region[chunkX + chunkZ * 32];
+        final int tindex = territoryIndexAtChunk(x, y);
         return tindex > 0
             ? territories.get(tindex - 1)
             : nullTerritory;
     }
+
+    /**
+     * Get the territory level at a block position.
+     * @return the level, or 0 outside of any territory
+     */
+    public int levelAt(int x, int z) {
+        final int tindex = territoryIndexAtChunk(x >> 4, z >> 4);
+        return tindex > 0
+            ? territories.get(tindex - 1).getLevel()
+            : 0;
+    }
+
+    /**
+     * Get the territory id at a block position.
+     * @return the id, or 0 outside of any territory
+     */
+    public int idAt(int x, int z) {
+        final int tindex = territoryIndexAtChunk(x >> 4, z >> 4);
+        return tindex > 0
+            ? territories.get(tindex - 1).getId()
+            : 0;
+    }
+
+    /**
+     * The position of the territory in the list, plus one, or 0 for
+     * no territory.
+     */
+    private int territoryIndexAtChunk(int x, int z) {
+        final int regionX = x >> 5;
+        final int regionZ = z >> 5;
+        final LongObjectMap<IntBuffer> table = regionTable;
+        final RegionCache cache = regionCache.get();
+        if (cache.table != table || cache.regionX != regionX || cache.regionZ != regionZ) {
+            cache.table = table;
+            cache.regionX = regionX;
+            cache.regionZ = regionZ;
+            cache.region = table.get(LongObjectMap.key(regionX, regionZ));
+        }
+        return cache.region != null
+            ? cache.region.get((x & 31) + (z & 31) * 32)
+            : 0;
+    }
+
+    /**
+     * The last region looked up by one thread.  A missing region is
+     * cached as null.  The table reference invalidates the cache
+     * when the world is reloaded.
+     */
+    private static final class RegionCache {
+        private LongObjectMap<IntBuffer> table;
+        private int regionX;
+        private int regionZ;
+        private IntBuffer region;
+    }
 }
@@ -0,0 +1,132 @@
+package com.cavetale.territory.struct;
+
+import com.cavetale.territory.util.LongObjectMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Saved to binary file, next to the territory index.
+ *
+ * The chunks planned to receive a structure, one bit per chunk, in
+ * regions of 32 by 32 chunks.  Only regions with at least one site
+ * are stored.
+ *
+ * Layout, big endian:
+ * - Header: magic, version, region count
+ * - Regions, sorted by z, then x: region x, region z, then 16 longs
+ *   holding bit (x & 31) + (z & 31) * 32
+ */
+public final class StructureSites {
+    public static final String FILE_NAME = "structure.sites";
+    private static final int MAGIC = 0x54535354; // TSST
+    private static final int VERSION = 1;
+    private static final int REGION_LONGS = 32 * 32 / 64;
+    private final LongObjectMap<Region> regionMap = new LongObjectMap<>();
+    private final List<Region> regionList = new ArrayList<>();
+    private int size;
+
+    private static final class Region {
+        private final int x;
+        private final int z;
+        private final long[] bits = new long[REGION_LONGS];
+
+        Region(final int x, final int z) {
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    private Region getRegion(int regionX, int regionZ, boolean create) {
+        final long key = LongObjectMap.key(regionX, regionZ);
+        Region region = regionMap.get(key);
+        if (region == null && create) {
+            region = new Region(regionX, regionZ);
+            regionMap.put(key, region);
+            regionList.add(region);
+        }
+        return region;
+    }
+
+    /**
+     * Plan a site in a chunk.
+     * @return true if it was added, false if it already existed
+     */
+    public boolean add(int chunkX, int chunkZ) {
+        Region region = getRegion(chunkX >> 5, chunkZ >> 5, true);
+        final int bit = (chunkX & 31) + (chunkZ & 31) * 32;
+        final long mask = 1L << (bit & 63);
+        if ((region.bits[bit >> 6] & mask) != 0L) return false;
+        region.bits[bit >> 6] |= mask;
+        size += 1;
+        return true;
+    }
+
+    public boolean contains(int chunkX, int chunkZ) {
+        Region region = getRegion(chunkX >> 5, chunkZ >> 5, false);
+        if (region == null) return false;
+        final int bit = (chunkX & 31) + (chunkZ & 31) * 32;
+        return (region.bits[bit >> 6] & (1L << (bit & 63))) != 0L;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRegionCount() {
+        return regionList.size();
+    }
+
+    /**
+     * Write to a temporary file and move it in place.
+     */
+    public void save(File file) throws IOException {
+        List<Region> sorted = new ArrayList<>(regionList);
+        sorted.sort(Comparator.<Region>comparingInt(r -> r.z).thenComparingInt(r -> r.x));
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            for (Region region : sorted) {
+                out.writeInt(region.x);
+                out.writeInt(region.z);
+                for (long bits : region.bits) {
+                    out.writeLong(bits);
+                }
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static StructureSites load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a structure sites file: " + file);
+            final int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unknown version " + version + ": " + file);
+            final int regionCount = in.readInt();
+            StructureSites result = new StructureSites();
+            for (int i = 0; i < regionCount; i += 1) {
+                final int regionX = in.readInt();
+                final int regionZ = in.readInt();
+                Region region = result.getRegion(regionX, regionZ, true);
+                for (int j = 0; j < REGION_LONGS; j += 1) {
+                    region.bits[j] = in.readLong();
+                    result.size += Long.bitCount(region.bits[j]);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.cavetale.territory.struct;
 
 import com.cavetale.core.struct.Vec2i;
 import com.cavetale.territory.BiomeGroup;
+import java.util.Arrays;
 import java.util.List;
 import lombok.Data;
 
@@ -14,6 +15,10 @@ import lombok.Data;
  * Each territory is stored in a file named after the chunk that's
  * considered its center. Example:
  * zone.-1.17.json
+ *
+ * Chunks are stored as row spans: triples of z, first x and last x,
+ * sorted by z, then x.  Older files list every chunk as an x/z pair
+ * in chunks, which is converted to spans on first use.
  */
 @Data
 public final class Territory {
@@ -22,18 +27,30 @@ public final class Territory {
     protected Vec2i center;
     protected String name;
     protected BiomeGroup biomeGroup;
+    /**
+     * Legacy format: x and z of each chunk, interleaved.
+     */
     protected List<Integer> chunks;
+    protected int[] spans;
+
+    /**
+     * Receive the coordinates of a chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(int x, int z);
+    }
 
     public Territory() { }
 
     public Territory(final int id, final int level, final Vec2i center,
-                     final String name, final BiomeGroup biomeGroup, final List<Integer> chunks) {
+                     final String name, final BiomeGroup biomeGroup, final int[] spans) {
         this.id = id;
         this.level = level;
         this.center = center;
         this.name = name;
         this.biomeGroup = biomeGroup;
-        this.chunks = chunks;
+        this.spans = spans;
     }
 
     public String getFileName() {
@@ -44,13 +61,109 @@ public final class Territory {
         return "territory." + id + "." + center.x + "." + center.z + "." + simpleName + ".json";
     }
 
+    /**
+     * Convert the legacy chunk list, if any.
+     */
+    private void ensureSpans() {
+        if (spans != null || chunks == null) return;
+        final int count = chunks.size() / 2;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i += 1) {
+            keys[i] = spanKey(chunks.get(i * 2), chunks.get(i * 2 + 1));
+        }
+        Arrays.sort(keys);
+        int[] result = new int[count * 3];
+        int length = 0;
+        for (int i = 0; i < count; i += 1) {
+            final int x = (int) keys[i] ^ 0x80000000;
+            final int z = (int) (keys[i] >> 32);
+            if (length > 0 && result[length - 3] == z && result[length - 1] >= x - 1) {
+                result[length - 1] = Math.max(result[length - 1], x);
+            } else {
+                result[length++] = z;
+                result[length++] = x;
+                result[length++] = x;
+            }
+        }
+        spans = Arrays.copyOf(result, length);
+        chunks = null;
+    }
+
+    /**
+     * Sort by z, then x.  Flipping the sign bit of x makes the
+     * unsigned lower half sort like a signed int.
+     */
+    private static long spanKey(int x, int z) {
+        return ((long) z << 32) | ((x ^ 0x80000000) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * The row spans, converted from the legacy chunk list if needed.
+     * Never null.
+     */
+    public int[] getSpans() {
+        ensureSpans();
+        return spans != null ? spans : new int[0];
+    }
+
     public int getChunkCount() {
-        return chunks.size() / 2;
+        ensureSpans();
+        if (spans == null) return 0;
+        int result = 0;
+        for (int i = 0; i < spans.length; i += 3) {
+            result += spans[i + 2] - spans[i + 1] + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Visit every chunk in order without allocating.
+     */
+    public void forEachChunk(ChunkConsumer consumer) {
+        ensureSpans();
+        if (spans == null) return;
+        for (int i = 0; i < spans.length; i += 3) {
+            final int z = spans[i];
+            for (int x = spans[i + 1]; x <= spans[i + 2]; x += 1) {
+                consumer.accept(x, z);
+            }
+        }
     }
 
+    /**
+     * Get a chunk by its position in the order of forEachChunk.
+     * This walks all spans up to the chunk, prefer forEachChunk.
+     */
     public Vec2i getChunk(int index) {
-        return new Vec2i(chunks.get(index * 2),
-                         chunks.get(index * 2 + 1));
+        ensureSpans();
+        for (int i = 0; spans != null && i < spans.length; i += 3) {
+            final int length = spans[i + 2] - spans[i + 1] + 1;
+            if (index < length) return new Vec2i(spans[i + 1] + index, spans[i]);
+            index -= length;
+        }
+        throw new IndexOutOfBoundsException("index=" + index);
+    }
+
+    /**
+     * Binary search the spans for a chunk.
+     */
+    public boolean contains(int x, int z) {
+        ensureSpans();
+        if (spans == null) return false;
+        int lo = 0;
+        int hi = spans.length / 3 - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int spanZ = spans[mid * 3];
+            if (spanZ < z || (spanZ == z && spans[mid * 3 + 2] < x)) {
+                lo = mid + 1;
+            } else if (spanZ > z || spans[mid * 3 + 1] > x) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
     }
 
     public BiomeGroup getBiomeGroup() {
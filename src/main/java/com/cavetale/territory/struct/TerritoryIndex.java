@@ -0,0 +1,170 @@
+package com.cavetale.territory.struct;
+
+import com.cavetale.core.struct.Vec2i;
+import com.cavetale.territory.BiomeGroup;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Saved to binary file, next to the territory JSON files.
+ *
+ * The index holds the metadata of all territories of a world along
+ * with prebuilt region lookup arrays, so the runtime can map it into
+ * memory instead of parsing every territory file.  Territories are
+ * loaded with their row spans, just like from JSON.
+ *
+ * Layout, big endian:
+ * - Header: magic, version, territory count, region count
+ * - Territories, sorted by id: id, level, center x, center z, biome
+ *   group key and name as length prefixed UTF-8, then the span array
+ *   length followed by the spans, see Territory
+ * - Regions: region x, region z, then 32 * 32 ints in row major
+ *   order, each the territory position in the above list plus one,
+ *   or 0 for no territory
+ */
+@Getter @RequiredArgsConstructor
+public final class TerritoryIndex {
+    public static final String FILE_NAME = "territories.index";
+    public static final int REGION_SIZE = 32 * 32;
+    private static final int MAGIC = 0x54494458; // TIDX
+    private static final int VERSION = 2;
+    private final List<Territory> territories;
+    private final Map<Vec2i, IntBuffer> regions;
+
+    /**
+     * Write the index to a temporary file and move it in place.
+     */
+    public static void save(File file, List<Territory> territoryList) throws IOException {
+        List<Territory> sorted = new ArrayList<>(territoryList);
+        sorted.sort(Comparator.comparingInt(Territory::getId));
+        Map<Vec2i, int[]> regionMap = new HashMap<>();
+        for (int tindex = 0; tindex < sorted.size(); tindex += 1) {
+            final int value = tindex + 1;
+            sorted.get(tindex).forEachChunk((x, z) -> {
+                    final Vec2i regionVec = new Vec2i(x >> 5, z >> 5);
+                    regionMap.computeIfAbsent(regionVec, v -> new int[REGION_SIZE])
+                        [(x & 31) + (z & 31) * 32] = value;
+                });
+        }
+        List<Vec2i> regionList = new ArrayList<>(regionMap.keySet());
+        regionList.sort(Comparator.<Vec2i>comparingInt(v -> v.z).thenComparingInt(v -> v.x));
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt(regionList.size());
+            for (Territory territory : sorted) {
+                out.writeInt(territory.getId());
+                out.writeInt(territory.getLevel());
+                out.writeInt(territory.getCenter().x);
+                out.writeInt(territory.getCenter().z);
+                writeString(out, territory.getBiomeGroup().key);
+                writeString(out, territory.getName());
+                final int[] spans = territory.getSpans();
+                out.writeInt(spans.length);
+                for (int value : spans) {
+                    out.writeInt(value);
+                }
+            }
+            for (Vec2i regionVec : regionList) {
+                out.writeInt(regionVec.x);
+                out.writeInt(regionVec.z);
+                for (int value : regionMap.get(regionVec)) {
+                    out.writeInt(value);
+                }
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Map the index into memory.  The region buffers are views of the
+     * mapped file and are never copied to the heap.
+     */
+    public static TerritoryIndex load(File file) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a territory index: " + file);
+        final int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Unknown version " + version + ": " + file);
+        final int territoryCount = buffer.getInt();
+        final int regionCount = buffer.getInt();
+        List<Territory> territories = new ArrayList<>(territoryCount);
+        for (int i = 0; i < territoryCount; i += 1) {
+            final int id = buffer.getInt();
+            final int level = buffer.getInt();
+            final int centerX = buffer.getInt();
+            final int centerZ = buffer.getInt();
+            final BiomeGroup biomeGroup = BiomeGroup.ofKey(readString(buffer));
+            final String name = readString(buffer);
+            final int[] spans = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(spans);
+            buffer.position(buffer.position() + spans.length * 4);
+            territories.add(new Territory(id, level, new Vec2i(centerX, centerZ), name, biomeGroup, spans));
+        }
+        Map<Vec2i, IntBuffer> regions = new HashMap<>(regionCount * 2);
+        for (int i = 0; i < regionCount; i += 1) {
+            final int regionX = buffer.getInt();
+            final int regionZ = buffer.getInt();
+            regions.put(new Vec2i(regionX, regionZ), buffer.slice(buffer.position(), REGION_SIZE * 4).asIntBuffer());
+            buffer.position(buffer.position() + REGION_SIZE * 4);
+        }
+        return new TerritoryIndex(territories, regions);
+    }
+
+    /**
+     * An index is fresh if it is at least as new as every territory
+     * file and covers the same number of territories.
+     */
+    public static boolean isFresh(File indexFile, List<File> territoryFiles) {
+        if (!indexFile.isFile()) return false;
+        final long indexModified = indexFile.lastModified();
+        for (File file : territoryFiles) {
+            if (file.lastModified() > indexModified) return false;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            while (header.hasRemaining() && channel.read(header) >= 0) { }
+            header.flip();
+            return header.remaining() == 12
+                && header.getInt() == MAGIC
+                && header.getInt() == VERSION
+                && header.getInt() == territoryFiles.size();
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+}
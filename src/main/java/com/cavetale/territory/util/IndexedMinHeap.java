@@ -0,0 +1,165 @@
+package com.cavetale.territory.util;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of int ids with long keys.  Ids must be within
+ * [0, capacity).  The position of every id is tracked, so keys can
+ * be changed and ids removed in O(log n) without searching.
+ */
+public final class IndexedMinHeap {
+    private int[] heap;
+    private int[] positions;
+    private long[] keys;
+    private int size;
+
+    public IndexedMinHeap(final int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new long[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        return id < positions.length && positions[id] >= 0;
+    }
+
+    public long getKey(int id) {
+        if (!contains(id)) throw new IllegalArgumentException("Not contained: " + id);
+        return keys[id];
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= positions.length) return;
+        final int oldCapacity = positions.length;
+        final int newCapacity = Math.max(capacity, oldCapacity * 2);
+        heap = Arrays.copyOf(heap, newCapacity);
+        keys = Arrays.copyOf(keys, newCapacity);
+        positions = Arrays.copyOf(positions, newCapacity);
+        Arrays.fill(positions, oldCapacity, newCapacity, -1);
+    }
+
+    public void add(int id, long key) {
+        if (contains(id)) throw new IllegalArgumentException("Already contained: " + id);
+        ensureCapacity(id + 1);
+        keys[id] = key;
+        heap[size] = id;
+        positions[id] = size;
+        size += 1;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Change the key of a contained id, in either direction.
+     */
+    public void update(int id, long key) {
+        if (!contains(id)) throw new IllegalArgumentException("Not contained: " + id);
+        final long oldKey = keys[id];
+        keys[id] = key;
+        if (key < oldKey) {
+            siftUp(positions[id]);
+        } else if (key > oldKey) {
+            siftDown(positions[id]);
+        }
+    }
+
+    /**
+     * Add the id or lower its key if the new key is smaller.
+     * @return true if the heap was changed, false otherwise
+     */
+    public boolean offer(int id, long key) {
+        if (!contains(id)) {
+            add(id, key);
+            return true;
+        } else if (key < keys[id]) {
+            update(id, key);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public int peek() {
+        if (size == 0) throw new IllegalStateException("Heap is empty");
+        return heap[0];
+    }
+
+    public long peekKey() {
+        return keys[peek()];
+    }
+
+    public int poll() {
+        final int result = peek();
+        removeAt(0);
+        return result;
+    }
+
+    public boolean remove(int id) {
+        if (!contains(id)) return false;
+        removeAt(positions[id]);
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i += 1) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int pos) {
+        final int id = heap[pos];
+        positions[id] = -1;
+        size -= 1;
+        if (pos == size) return;
+        final int last = heap[size];
+        heap[pos] = last;
+        positions[last] = pos;
+        siftDown(pos);
+        siftUp(positions[last]);
+    }
+
+    private void siftUp(int pos) {
+        final int id = heap[pos];
+        final long key = keys[id];
+        while (pos > 0) {
+            final int parentPos = (pos - 1) >> 1;
+            final int parent = heap[parentPos];
+            if (keys[parent] <= key) break;
+            heap[pos] = parent;
+            positions[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = id;
+        positions[id] = pos;
+    }
+
+    private void siftDown(int pos) {
+        final int id = heap[pos];
+        final long key = keys[id];
+        final int half = size >> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            final int rightPos = childPos + 1;
+            if (rightPos < size && keys[heap[rightPos]] < keys[child]) {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (key <= keys[child]) break;
+            heap[pos] = child;
+            positions[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = id;
+        positions[id] = pos;
+    }
+}
@@ -0,0 +1,162 @@
+package com.cavetale.territory.util;
+
+/**
+ * Open addressing hash map from positive int keys to int values,
+ * without boxing.  Zero is reserved as the empty key.  Entries whose
+ * value drops to zero via add() are removed.
+ *
+ * Iterate allocation free like so:
+ * for (int slot = 0; slot < map.capacity(); slot += 1) {
+ *     if (map.keyAt(slot) == 0) continue;
+ *     ...
+ * }
+ */
+public final class IntIntMap {
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntMap() {
+        this(8);
+    }
+
+    public IntIntMap(final int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) capacity <<= 1;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private static int hash(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slotOf(int key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * @return the value or 0 if the key is absent
+     */
+    public int get(int key) {
+        final int slot = slotOf(key);
+        return slot >= 0 ? values[slot] : 0;
+    }
+
+    public void put(int key, int value) {
+        if (key <= 0) throw new IllegalArgumentException("key=" + key);
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size += 1;
+        if (size * 2 > keys.length) rehash(keys.length * 2);
+    }
+
+    /**
+     * Add to the value of a key, which is treated as 0 if absent.
+     * The entry is removed if the result is 0.
+     * @return the new value
+     */
+    public int add(int key, int delta) {
+        final int slot = slotOf(key);
+        if (slot < 0) {
+            if (delta != 0) put(key, delta);
+            return delta;
+        }
+        final int value = values[slot] + delta;
+        if (value == 0) {
+            removeSlot(slot);
+        } else {
+            values[slot] = value;
+        }
+        return value;
+    }
+
+    public int remove(int key) {
+        final int slot = slotOf(key);
+        if (slot < 0) return 0;
+        final int value = values[slot];
+        removeSlot(slot);
+        return value;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i += 1) {
+            keys[i] = 0;
+            values[i] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Backward shift deletion, keeping probe sequences intact.
+     */
+    private void removeSlot(int slot) {
+        final int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != 0) {
+            final int ideal = hash(keys[next]) & mask;
+            // Move the entry if its ideal slot is not within (hole, next]
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+        size -= 1;
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i += 1) {
+            if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.cavetale.territory.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints.  Used where a List of boxed
+ * Integers would cost too much, such as chunk indexes.
+ */
+public final class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(final int capacity) {
+        this.data = new int[Math.max(1, capacity)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException(index + "/" + size);
+        return data[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= size) throw new IndexOutOfBoundsException(index + "/" + size);
+        data[index] = value;
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        data[size++] = value;
+    }
+
+    public void addAll(IntList other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Remove the value at the index and shift all subsequent values
+     * to the left.
+     */
+    public int removeAt(int index) {
+        int result = get(index);
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        size -= 1;
+        return result;
+    }
+
+    /**
+     * Remove the value at the index and replace it with the last
+     * value.  Does not maintain order.
+     */
+    public int swapRemove(int index) {
+        int result = get(index);
+        size -= 1;
+        data[index] = data[size];
+        return result;
+    }
+
+    public int removeLast() {
+        if (size == 0) throw new IndexOutOfBoundsException("empty");
+        size -= 1;
+        return data[size];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    @Override
+    public String toString() {
+        return "IntList(" + size + ")";
+    }
+}
@@ -11,6 +11,22 @@ public final class Vectors {
         return List.of(vec.add(1, 0), vec.add(0, 1), vec.add(-1, 0), vec.add(0, -1));
     }
 
+    /**
+     * Walk the neighbors of a row major grid index without
+     * allocating.  Directions 0 to 3 are in the same order as
+     * neighbors(Vec2i).
+     * @return the neighbor index or -1 if it is out of bounds
+     */
+    public static int neighbor(int index, int direction, int width, int height) {
+        switch (direction) {
+        case 0: return index % width < width - 1 ? index + 1 : -1;
+        case 1: return index < width * (height - 1) ? index + width : -1;
+        case 2: return index % width > 0 ? index - 1 : -1;
+        case 3: return index >= width ? index - width : -1;
+        default: throw new IllegalArgumentException("direction=" + direction);
+        }
+    }
+
     public static Vec2i dimensions(Iterable<Vec2i> vecs) {
         Vec2i sample = vecs.iterator().next();
         int ax = sample.x;
@@ -1,9 +1,22 @@
 package com.cavetale.territory;
 
+import com.cavetale.core.struct.Vec2i;
+import com.cavetale.territory.struct.Territory;
+import com.cavetale.territory.struct.TerritoryIndex;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.bukkit.block.Biome;
 
 public class TerritoryTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void test() {
         for (Biome biome : Biome.values()) {
@@ -12,4 +25,48 @@ public class TerritoryTest {
             }
         }
     }
+
+    @Test
+    public void testLegacyChunks() {
+        Territory territory = new Territory();
+        territory.setChunks(List.of(-1, 5, 0, 5, 1, 5, 3, 5, -2, -7, 2, 5, 3, 5));
+        Assert.assertEquals(6, territory.getChunkCount());
+        Assert.assertArrayEquals(new int[] {-7, -2, -2, 5, -1, 3}, territory.getSpans());
+        Assert.assertTrue(territory.contains(-2, -7));
+        Assert.assertTrue(territory.contains(-1, 5));
+        Assert.assertTrue(territory.contains(3, 5));
+        Assert.assertFalse(territory.contains(-1, -7));
+        Assert.assertFalse(territory.contains(4, 5));
+        Assert.assertFalse(territory.contains(0, 6));
+        List<Integer> visited = new ArrayList<>();
+        territory.forEachChunk((x, z) -> {
+                visited.add(x);
+                visited.add(z);
+            });
+        Assert.assertEquals(List.of(-2, -7, -1, 5, 0, 5, 1, 5, 2, 5, 3, 5), visited);
+    }
+
+    /**
+     * Territories from the index behave like those from JSON.
+     */
+    @Test
+    public void testIndexRoundTrip() throws IOException {
+        Territory a = new Territory(2, 3, new Vec2i(0, 5), "A", BiomeGroup.PLAINS, new int[] {-7, -2, -2, 5, -1, 3});
+        Territory b = new Territory(1, 0, new Vec2i(40, 40), "B", BiomeGroup.FOREST, new int[] {40, 39, 41});
+        File file = new File(temporaryFolder.getRoot(), TerritoryIndex.FILE_NAME);
+        TerritoryIndex.save(file, List.of(a, b));
+        TerritoryIndex index = TerritoryIndex.load(file);
+        Assert.assertEquals(2, index.getTerritories().size());
+        Territory loadedB = index.getTerritories().get(0);
+        Territory loadedA = index.getTerritories().get(1);
+        Assert.assertEquals("B", loadedB.getName());
+        Assert.assertEquals(BiomeGroup.FOREST, loadedB.getBiomeGroup());
+        Assert.assertArrayEquals(b.getSpans(), loadedB.getSpans());
+        Assert.assertArrayEquals(a.getSpans(), loadedA.getSpans());
+        Assert.assertEquals(6, loadedA.getChunkCount());
+        Assert.assertTrue(loadedA.contains(-1, 5));
+        Assert.assertFalse(loadedA.contains(4, 5));
+        Assert.assertEquals(new Vec2i(40, 40), loadedB.getChunk(1));
+        Assert.assertEquals(2, index.getRegions().get(new Vec2i(-1, 0)).get(31 + 5 * 32));
+    }
 }
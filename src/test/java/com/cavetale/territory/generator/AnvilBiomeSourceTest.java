@@ -0,0 +1,137 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class AnvilBiomeSourceTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * A chunk with the given sections, each a Y level followed by its
+     * biome palette.  Sections with two biomes put the second one in
+     * all but the first cell.  Some unrelated tags are thrown in to
+     * be skipped.
+     */
+    private static byte[] chunk(Object[]... sections) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        out.writeByte(3);
+        out.writeUTF("DataVersion");
+        out.writeInt(3120);
+        out.writeByte(8);
+        out.writeUTF("Status");
+        out.writeUTF("minecraft:full");
+        out.writeByte(9);
+        out.writeUTF("sections");
+        out.writeByte(10);
+        out.writeInt(sections.length);
+        for (Object[] section : sections) {
+            out.writeByte(11);
+            out.writeUTF("BlockLight");
+            out.writeInt(2);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(1);
+            out.writeUTF("Y");
+            out.writeByte((Integer) section[0]);
+            out.writeByte(10);
+            out.writeUTF("biomes");
+            out.writeByte(9);
+            out.writeUTF("palette");
+            out.writeByte(8);
+            out.writeInt(section.length - 1);
+            for (int i = 1; i < section.length; i += 1) {
+                out.writeUTF((String) section[i]);
+            }
+            if (section.length > 2) {
+                // One bit per cell, 64 cells in one long
+                out.writeByte(12);
+                out.writeUTF("data");
+                out.writeInt(1);
+                out.writeLong(-2L);
+            }
+            out.writeByte(0);
+            out.writeByte(0);
+        }
+        out.writeByte(12);
+        out.writeUTF("Heightmaps");
+        out.writeInt(1);
+        out.writeLong(0L);
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] compress(byte[] data, int compression) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = compression == 1
+             ? new GZIPOutputStream(bytes)
+             : new DeflaterOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write a region file with one chunk per sector.
+     */
+    private static void region(File file, int[] slots, byte[][] chunks, int[] compressions) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(8192);
+            for (int i = 0; i < slots.length; i += 1) {
+                byte[] data = compress(chunks[i], compressions[i]);
+                final int sector = 2 + i;
+                out.seek(slots[i] * 4);
+                out.writeInt((sector << 8) | 1);
+                out.seek(sector * 4096);
+                out.writeInt(data.length + 1);
+                out.writeByte(compressions[i]);
+                out.write(data);
+                out.setLength((sector + 1) * 4096);
+            }
+        }
+    }
+
+    @Test
+    public void testRegions() throws IOException {
+        File folder = temporaryFolder.newFolder("region");
+        byte[] surface = chunk(new Object[] {-4, "minecraft:lush_caves"},
+                               new Object[] {5, "minecraft:plains", "minecraft:forest"});
+        byte[] desert = chunk(new Object[] {0, "minecraft:dripstone_caves"},
+                              new Object[] {1, "minecraft:dripstone_caves"},
+                              new Object[] {6, "minecraft:desert"});
+        byte[] caves = chunk(new Object[] {-2, "minecraft:lush_caves"});
+        region(new File(folder, "r.0.0.mca"),
+               new int[] {0, 1 + 32 * 2},
+               new byte[][] {surface, desert},
+               new int[] {2, 1});
+        region(new File(folder, "r.-1.0.mca"),
+               new int[] {31},
+               new byte[][] {caves},
+               new int[] {2});
+        ChunkGrid grid = new AnvilBiomeSource(folder, Logger.getLogger("AnvilBiomeSourceTest")).createGrid();
+        Assert.assertEquals(-32, grid.getAx());
+        Assert.assertEquals(0, grid.getAz());
+        Assert.assertEquals(64, grid.getWidth());
+        Assert.assertEquals(32, grid.getHeight());
+        Assert.assertEquals(BiomeGroup.FOREST, grid.getBiomeGroup(grid.index(0, 0)));
+        Assert.assertEquals(BiomeGroup.DESERT, grid.getBiomeGroup(grid.index(1, 2)));
+        // Only cave sections, which are below the surface
+        Assert.assertNull(grid.getBiomeGroup(grid.index(-1, 0)));
+        Assert.assertNull(grid.getBiomeGroup(grid.index(5, 5)));
+    }
+}
@@ -0,0 +1,84 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import com.cavetale.territory.struct.StructureSites;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class SitePlannerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Two zones side by side, and a river which gets no sites.
+     */
+    @Test
+    public void testPlan() throws IOException {
+        final int width = 200;
+        final int height = 100;
+        ChunkGrid grid = new ChunkGrid(-50, -30, width, height);
+        GeneratorZone plains = grid.createZone(BiomeGroup.PLAINS);
+        GeneratorZone forest = grid.createZone(BiomeGroup.FOREST);
+        GeneratorZone river = grid.createZone(BiomeGroup.RIVER);
+        plains.level = 0;
+        forest.level = 10;
+        for (int index = 0; index < grid.size(); index += 1) {
+            final int x = index % width;
+            if (x < 95) {
+                plains.addChunk(index);
+            } else if (x < 100) {
+                river.addChunk(index);
+            } else {
+                forest.addChunk(index);
+            }
+        }
+        SitePlanner sitePlanner = new SitePlanner(grid, 10, new Random(1));
+        StructureSites sites = sitePlanner.plan(List.of(plains, forest, river));
+        List<int[]> list = new ArrayList<>();
+        for (int index = 0; index < grid.size(); index += 1) {
+            if (!sites.contains(grid.x(index), grid.z(index))) continue;
+            Assert.assertNotEquals(river.gridId, grid.getZoneId(index));
+            list.add(new int[] {grid.x(index), grid.z(index), grid.getZoneId(index)});
+        }
+        Assert.assertEquals(sites.size(), list.size());
+        int plainsCount = 0;
+        int forestCount = 0;
+        for (int[] a : list) {
+            if (a[2] == plains.gridId) plainsCount += 1;
+            if (a[2] == forest.gridId) forestCount += 1;
+            final double spacing = a[2] == plains.gridId
+                ? SitePlanner.MAX_SPACING
+                : SitePlanner.MIN_SPACING;
+            for (int[] b : list) {
+                if (a == b) continue;
+                final int dx = a[0] - b[0];
+                final int dz = a[1] - b[1];
+                Assert.assertTrue("spacing " + spacing, dx * dx + dz * dz >= (int) (SitePlanner.MIN_SPACING * SitePlanner.MIN_SPACING));
+                if (b[2] == a[2]) {
+                    Assert.assertTrue("spacing " + spacing, dx * dx + dz * dz >= spacing * spacing);
+                }
+            }
+        }
+        // Well filled: each site covers less than about twice the
+        // area of its disk
+        Assert.assertTrue("plains:" + plainsCount, plainsCount * SitePlanner.MAX_SPACING * SitePlanner.MAX_SPACING * 2 > 95 * height);
+        Assert.assertTrue("forest:" + forestCount, forestCount * SitePlanner.MIN_SPACING * SitePlanner.MIN_SPACING * 2 > 100 * height);
+        // Round trip
+        File file = new File(temporaryFolder.getRoot(), StructureSites.FILE_NAME);
+        sites.save(file);
+        StructureSites loaded = StructureSites.load(file);
+        Assert.assertEquals(sites.size(), loaded.size());
+        Assert.assertEquals(sites.getRegionCount(), loaded.getRegionCount());
+        for (int[] a : list) {
+            Assert.assertTrue(loaded.contains(a[0], a[1]));
+        }
+        Assert.assertFalse(loaded.contains(1000, 1000));
+    }
+}
@@ -0,0 +1,44 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.core.struct.Cuboid;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class StructureGridTest {
+    @Test
+    public void testIntersects() {
+        List<Cuboid> stored = new ArrayList<>();
+        // Spans four cells around the origin
+        stored.add(new Cuboid(-10, 60, -10, 10, 70, 10));
+        List<int[]> loads = new ArrayList<>();
+        StructureGrid grid = new StructureGrid((ax, az, bx, bz) -> {
+                loads.add(new int[] {ax, az, bx, bz});
+                List<Cuboid> result = new ArrayList<>();
+                for (Cuboid it : stored) {
+                    if (it.ax <= bx && it.bx >= ax && it.az <= bz && it.bz >= az) result.add(it);
+                }
+                return result;
+            });
+        Assert.assertTrue(grid.intersects(new Cuboid(-100, 48, -100, -10, 320, -10)));
+        Assert.assertEquals(1, grid.getLoadedCells());
+        Assert.assertArrayEquals(new int[] {-128, -128, -1, -1}, loads.get(0));
+        Assert.assertTrue(grid.intersects(new Cuboid(10, 48, 10, 200, 320, 200)));
+        // Cells are loaded once
+        Assert.assertTrue(grid.intersects(new Cuboid(10, 48, 10, 20, 320, 20)));
+        Assert.assertEquals(2, grid.getLoadedCells());
+        // Same cell, but apart
+        Assert.assertFalse(grid.intersects(new Cuboid(11, 48, 11, 100, 320, 100)));
+        // Below
+        Assert.assertFalse(grid.intersects(new Cuboid(-10, 0, -10, 10, 59, 10)));
+        // Added to a loaded cell, and stored for the loader
+        Cuboid placed = new Cuboid(1000, 60, 1000, 1020, 70, 1020);
+        Assert.assertFalse(grid.intersects(new Cuboid(900, 0, 900, 1000, 60, 1000)));
+        stored.add(placed);
+        grid.add(placed);
+        Assert.assertTrue(grid.intersects(new Cuboid(900, 0, 900, 1000, 60, 1000)));
+        Assert.assertTrue(grid.intersects(new Cuboid(1010, 0, 1010, 1030, 60, 1030)));
+        Assert.assertFalse(grid.intersects(new Cuboid(500, 48, 500, 600, 320, 600)));
+    }
+}
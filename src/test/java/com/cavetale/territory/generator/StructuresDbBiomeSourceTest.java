@@ -0,0 +1,67 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class StructuresDbBiomeSourceTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File createDb(String... sql) throws SQLException {
+        File file = new File(temporaryFolder.getRoot(), StructuresDbBiomeSource.FILE_NAME);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+             Statement statement = connection.createStatement()) {
+            for (String it : sql) {
+                statement.executeUpdate(it);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void testCreateGrid() throws SQLException {
+        File file = createDb("CREATE TABLE biomes (id INTEGER PRIMARY KEY, chunk_x INTEGER, chunk_z INTEGER, biome TEXT)",
+                             "INSERT INTO biomes (chunk_x, chunk_z, biome) VALUES"
+                             + " (-2, 1, 'minecraft:plains'), (3, 4, 'DESERT'), (1, -1, NULL), (2, 2, 'minecraft:unknown')");
+        ChunkGrid grid = new StructuresDbBiomeSource(file).createGrid();
+        // Chunk 0, 0 is always included
+        Assert.assertEquals(-2, grid.getAx());
+        Assert.assertEquals(-1, grid.getAz());
+        Assert.assertEquals(6, grid.getWidth());
+        Assert.assertEquals(6, grid.getHeight());
+        Assert.assertEquals(BiomeGroup.PLAINS, grid.getBiomeGroup(grid.index(-2, 1)));
+        Assert.assertEquals(BiomeGroup.DESERT, grid.getBiomeGroup(grid.index(3, 4)));
+        Assert.assertFalse(grid.hasBiome(grid.index(1, -1)));
+        Assert.assertFalse(grid.hasBiome(grid.index(2, 2)));
+    }
+
+    @Test
+    public void testWrongSchema() throws SQLException {
+        File file = createDb("CREATE TABLE biomes (x INTEGER, z INTEGER, biome TEXT)");
+        try {
+            new StructuresDbBiomeSource(file).createGrid();
+            Assert.fail();
+        } catch (IllegalStateException ise) {
+            Assert.assertTrue(ise.getMessage(), ise.getMessage().contains("[chunk_x, chunk_z]"));
+        }
+    }
+
+    @Test
+    public void testNoTable() throws SQLException {
+        File file = createDb("CREATE TABLE structures (name TEXT)");
+        try {
+            new StructuresDbBiomeSource(file).createGrid();
+            Assert.fail();
+        } catch (IllegalStateException ise) {
+            Assert.assertTrue(ise.getMessage(), ise.getMessage().startsWith("No biomes table"));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cavetale.territory.generator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class TickBudgetTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void testBudget() {
+        TickBudget tickBudget = new TickBudget(30.0, 40.0, 1);
+        // Idle server: capped by the maximum budget
+        Assert.assertEquals(30 * MS, tickBudget.getBudget(2.0));
+        // Busy server: only what is left under the target
+        Assert.assertEquals(15 * MS, tickBudget.getBudget(25.0));
+        // Overloaded server: nothing
+        Assert.assertEquals(0L, tickBudget.getBudget(60.0));
+    }
+
+    @Test
+    public void testOwnSlices() {
+        TickBudget tickBudget = new TickBudget(30.0, 40.0, 1);
+        for (int i = 0; i < 200; i += 1) {
+            tickBudget.record(20 * MS, 10);
+        }
+        // 20ms of the average tick are our own
+        final long budget = tickBudget.getBudget(30.0);
+        Assert.assertTrue("budget=" + budget, Math.abs(budget - 30 * MS) < MS);
+        Assert.assertTrue(tickBudget.finishStage().startsWith("steps:2000 ticks:200 "));
+    }
+}
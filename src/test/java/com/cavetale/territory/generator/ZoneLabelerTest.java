@@ -0,0 +1,62 @@
+package com.cavetale.territory.generator;
+
+import com.cavetale.territory.BiomeGroup;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class ZoneLabelerTest {
+    private static ChunkGrid grid(String... rows) {
+        ChunkGrid grid = new ChunkGrid(0, 0, rows[0].length(), rows.length);
+        for (int z = 0; z < rows.length; z += 1) {
+            for (int x = 0; x < rows[z].length(); x += 1) {
+                switch (rows[z].charAt(x)) {
+                case 'F': grid.setBiomeGroup(x, z, BiomeGroup.FOREST); break;
+                case 'R': grid.setBiomeGroup(x, z, BiomeGroup.RIVER); break;
+                default: break;
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static List<GeneratorZone> label(ChunkGrid grid, int tileSize) {
+        List<GeneratorZone> zones = new ArrayList<>();
+        ZoneLabeler labeler = new ZoneLabeler(grid, ForkJoinPool.commonPool(), tileSize);
+        labeler.label();
+        labeler.createZones(0, grid.getHeight(), zones);
+        return zones;
+    }
+
+    @Test
+    public void testSeams() {
+        ChunkGrid grid = grid("FFFFFFFF",
+                              "FRRRRRRF",
+                              "FR....RF",
+                              "FRRR.RRF",
+                              "F.....FF");
+        for (int tileSize = 1; tileSize <= 8; tileSize += 1) {
+            grid.clearZones();
+            List<GeneratorZone> zones = label(grid, tileSize);
+            Assert.assertEquals("tileSize=" + tileSize, 2, zones.size());
+            Assert.assertEquals(BiomeGroup.FOREST, zones.get(0).getBiomeGroup());
+            Assert.assertEquals(17, zones.get(0).size());
+            Assert.assertEquals(BiomeGroup.RIVER, zones.get(1).getBiomeGroup());
+            Assert.assertEquals(13, zones.get(1).size());
+        }
+    }
+
+    @Test
+    public void testDiagonal() {
+        ChunkGrid grid = grid("F.F",
+                              ".F.",
+                              "F.F");
+        List<GeneratorZone> zones = label(grid, 2);
+        Assert.assertEquals(5, zones.size());
+        for (GeneratorZone zone : zones) {
+            Assert.assertEquals(1, zone.size());
+        }
+    }
+}